@@ -0,0 +1,58 @@
+package lab1;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory AddressBook mutations at several book sizes. Each operation is paired with its
+ * inverse so the book stays the same size across iterations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AddressBookBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    int size;
+
+    AddressBook book;
+    BuddyInfo extra;
+    BuddyInfo middle;
+
+    @Setup
+    public void setUp() {
+        book = new AddressBook("bench");
+        for (int i = 0; i < size; i++) {
+            BuddyInfo b = new BuddyInfo("name" + i, "555-" + i, i + " Bench St");
+            ReflectionTestUtils.setField(b, "id", (long) i + 1);
+            book.addBuddy(b);
+        }
+        middle = book.getBuddies().get(size / 2);
+        extra = new BuddyInfo("extra", "555-0000", "Extra St");
+        ReflectionTestUtils.setField(extra, "id", (long) size + 1);
+    }
+
+    @Benchmark
+    public int addBuddyThenRemove() {
+        book.addBuddy(extra);
+        book.removeBuddy(extra);
+        return book.size();
+    }
+
+    @Benchmark
+    public int removeBuddyByIdThenReAdd() {
+        book.removeBuddyById(middle.getId());
+        book.addBuddy(middle);
+        return book.size();
+    }
+
+    @Benchmark
+    public BuddyInfo addDuplicateSkipped() {
+        return book.addBuddy(new BuddyInfo(middle.getName(), middle.getPhone(), middle.getAddress()), DuplicatePolicy.SKIP);
+    }
+}
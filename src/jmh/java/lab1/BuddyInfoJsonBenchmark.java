@@ -0,0 +1,43 @@
+package lab1;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Jackson round trips of a single BuddyInfo, as the REST endpoints do per buddy. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuddyInfoJsonBenchmark {
+
+    ObjectWriter writer;
+    ObjectReader reader;
+    BuddyInfo buddy;
+    byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        writer = mapper.writerFor(BuddyInfo.class);
+        reader = mapper.readerFor(BuddyInfo.class);
+        buddy = new BuddyInfo("John Smith", "613-555-0199", "1125 Colonel By Dr, Ottawa");
+        json = writer.writeValueAsBytes(buddy);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(buddy);
+    }
+
+    @Benchmark
+    public BuddyInfo deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+}
@@ -0,0 +1,56 @@
+package lab1;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Type-ahead queries against one book of 1M buddies. SampleTime mode reports p99 / p99.9
+ * per query shape; the target is under 1 ms at p99.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class BuddySearchIndexBenchmark {
+    static final String[] FIRST = {"John", "Joanna", "Mary", "Ahmed", "Li", "Sofia", "Jordan", "Marie", "Omar", "Priya",
+            "Smith", "Chen", "Olivia", "Noah", "Emma", "Lucas", "Amelia", "Mateo", "Zoe", "Ethan"};
+    static final String[] LAST = {"Smith", "Smithers", "Johnson", "Nguyen", "Tremblay", "Gagnon", "Roy", "Côté", "Khan",
+            "Patel", "Martin", "Lee", "Brown", "Wilson", "Singh", "Garcia", "Ali", "Murphy", "Bouchard", "Jones"};
+    static final String[] STREET = {"Bank St", "Elgin St", "Rideau St", "Colonel By Dr", "Carling Ave", "Baseline Rd",
+            "Main St", "King St", "Queen St", "Yonge St"};
+    static final String[] CITY = {"Ottawa", "Kanata", "Toronto", "Montreal", "Gatineau", "Nepean"};
+
+    @Param({"1000000"})
+    int buddies;
+
+    @Param({"jo", "smi", "jo smi", "ottawa bank", "613", "6135550"})
+    String query;
+
+    BuddySearchIndex index;
+
+    @Setup
+    public void setUp() {
+        DataSource unused = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DataSource.class}, (p, m, a) -> { throw new UnsupportedOperationException(); });
+        index = new BuddySearchIndex(unused);
+        Random rnd = new Random(42);
+        for (long id = 1; id <= buddies; id++) {
+            String name = FIRST[rnd.nextInt(FIRST.length)] + " " + LAST[rnd.nextInt(LAST.length)] + " " + id;
+            String phone = (rnd.nextBoolean() ? "613" : "416") + "-555-" + String.format("%04d", rnd.nextInt(10_000));
+            String address = rnd.nextInt(2000) + " " + STREET[rnd.nextInt(STREET.length)] + ", " + CITY[rnd.nextInt(CITY.length)];
+            index.put(1L, new BuddySearchHit(id, name, phone, address));
+        }
+    }
+
+    @Benchmark
+    public List<BuddySearchHit> typeAhead() {
+        return index.search(1L, query, BuddySearchController.DEFAULT_LIMIT);
+    }
+}
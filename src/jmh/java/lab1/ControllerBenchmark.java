@@ -0,0 +1,88 @@
+package lab1;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * Full AddressBookController round trips through MockMvc (dispatch, JSON, JPA, H2),
+ * without a network hop, on a book of 1k buddies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ControllerBenchmark {
+    static final int BUDDIES = 1_000;
+
+    ConfigurableApplicationContext ctx;
+    MockMvc mvc;
+    String book;
+
+    @Setup
+    public void setUp() throws Exception {
+        ctx = new SpringApplicationBuilder(AddressBookApp.class)
+                .web(WebApplicationType.SERVLET)
+                .properties("server.port=0",
+                        "management.server.port=-1",
+                        "spring.datasource.url=jdbc:h2:mem:jmh-mvc;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "logging.level.root=WARN")
+                .run();
+        mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) ctx).build();
+        AddressBook created = ctx.getBean(AddressBookRepository.class).save(new AddressBook("bench"));
+        book = "/addressbooks/" + created.getId();
+        StringBuilder bulk = new StringBuilder("[");
+        for (int i = 0; i < BUDDIES; i++) {
+            if (i > 0) bulk.append(',');
+            bulk.append("{\"name\":\"name").append(i).append("\",\"phone\":\"555-").append(i)
+                    .append("\",\"address\":\"Bench St\"}");
+        }
+        mvc.perform(post(book + "/buddies/bulk").contentType(MediaType.APPLICATION_JSON)
+                .content(bulk.append(']').toString()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public String getBook() throws Exception {
+        return body(mvc.perform(get(book)).andReturn());
+    }
+
+    @Benchmark
+    public String getSummary() throws Exception {
+        return body(mvc.perform(get(book).param("view", "summary")).andReturn());
+    }
+
+    @Benchmark
+    public String listBuddiesPage() throws Exception {
+        return body(mvc.perform(get(book + "/buddies").param("limit", "50")).andReturn());
+    }
+
+    @Benchmark
+    public int addThenRemoveBuddy() throws Exception {
+        MvcResult added = mvc.perform(post(book + "/buddies").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"extra\",\"phone\":\"555\",\"address\":\"Extra St\"}")).andReturn();
+        String location = added.getResponse().getHeader("Location");
+        return mvc.perform(delete(location)).andReturn().getResponse().getStatus();
+    }
+
+    private static String body(MvcResult result) throws Exception {
+        return result.getResponse().getContentAsString();
+    }
+}
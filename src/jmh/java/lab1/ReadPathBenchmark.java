@@ -0,0 +1,104 @@
+package lab1;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a read response the old way (managed entities handed to the general Jackson
+ * converter) against the new one (records, written by a writer resolved once), for a book of
+ * 1k buddies and a 50-buddy keyset page. Allocation per request is the point; run with
+ * mvn -Pjmh verify -DskipTests -Djmh.args="ReadPathBenchmark -prof gc" and compare
+ * gc.alloc.rate.norm (bytes/op).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadPathBenchmark {
+    static final int BUDDIES = 1_000;
+    static final int PAGE = 50;
+
+    ConfigurableApplicationContext ctx;
+    AddressBookRepository abRepo;
+    BuddyInfoRepository buddyRepo;
+    TransactionTemplate readOnly;
+    ObjectMapper json;
+    ObjectWriter bookWriter;
+    ObjectWriter pageWriter;
+    Long bookId;
+
+    @Setup
+    public void setUp() {
+        ctx = new SpringApplicationBuilder(AddressBookApp.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:jmh-read;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "logging.level.root=WARN")
+                .run();
+        abRepo = ctx.getBean(AddressBookRepository.class);
+        buddyRepo = ctx.getBean(BuddyInfoRepository.class);
+        readOnly = new TransactionTemplate(ctx.getBean(TransactionTemplate.class).getTransactionManager());
+        readOnly.setReadOnly(true);
+        json = ctx.getBean(ObjectMapper.class);
+        bookWriter = json.writerFor(AddressBookView.class);
+        pageWriter = json.writerFor(BuddyPage.class);
+        AddressBook book = abRepo.save(new AddressBook("bench"));
+        bookId = book.getId();
+        List<BuddyInfo> buddies = new ArrayList<>(BUDDIES);
+        for (int i = 0; i < BUDDIES; i++) {
+            BuddyInfo b = new BuddyInfo("name" + i, "555-" + i, i + " Bench St");
+            b.setAddressBook(book);
+            buddies.add(b);
+        }
+        ctx.getBean(TransactionTemplate.class).executeWithoutResult(s -> buddyRepo.saveAll(buddies));
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    // before: the managed book (second-level cache) rendered by a per-call writer
+    @Benchmark
+    public byte[] bookAsEntity() throws IOException {
+        AddressBook book = readOnly.execute(s -> {
+            AddressBook b = abRepo.findById(bookId).orElseThrow();
+            b.size();
+            return b;
+        });
+        return json.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public byte[] bookAsView() throws IOException {
+        AddressBookView view = readOnly.execute(s -> AddressBookView.of(abRepo.findById(bookId).orElseThrow()));
+        return bookWriter.writeValueAsBytes(view);
+    }
+
+    @Benchmark
+    public byte[] pageAsEntities() throws IOException {
+        List<BuddyInfo> page = readOnly.execute(s ->
+                buddyRepo.findByAddressBookIdAndIdGreaterThanOrderByIdAsc(bookId, 0L, Limit.of(PAGE)));
+        return json.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] pageAsViews() throws IOException {
+        List<BuddyView> page = readOnly.execute(s ->
+                buddyRepo.findViewsByAddressBookIdAndIdGreaterThanOrderByIdAsc(bookId, 0L, Limit.of(PAGE)));
+        return pageWriter.writeValueAsBytes(new BuddyPage(page, null));
+    }
+}
@@ -0,0 +1,85 @@
+package lab1;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/** Repository finders against embedded H2, on a book of 10k buddies. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+    static final int BUDDIES = 10_000;
+
+    ConfigurableApplicationContext ctx;
+    AddressBookRepository abRepo;
+    BuddyInfoRepository buddyRepo;
+    Long bookId;
+    Long middleId;
+    String middleKey;
+
+    @Setup
+    public void setUp() {
+        ctx = new SpringApplicationBuilder(AddressBookApp.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:jmh-repo;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "logging.level.root=WARN")
+                .run();
+        abRepo = ctx.getBean(AddressBookRepository.class);
+        buddyRepo = ctx.getBean(BuddyInfoRepository.class);
+        AddressBook book = abRepo.save(new AddressBook("bench"));
+        bookId = book.getId();
+        List<BuddyInfo> buddies = new ArrayList<>(BUDDIES);
+        for (int i = 0; i < BUDDIES; i++) {
+            BuddyInfo b = new BuddyInfo("name" + i, "555-" + i, i + " Bench St");
+            b.setAddressBook(book);
+            buddies.add(b);
+        }
+        ctx.getBean(TransactionTemplate.class).executeWithoutResult(s -> buddyRepo.saveAll(buddies));
+        BuddyInfo middle = buddies.get(BUDDIES / 2);
+        middleId = middle.getId();
+        middleKey = middle.getDedupKey();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public List<BuddyInfo> keysetPage() {
+        return buddyRepo.findByAddressBookIdAndIdGreaterThanOrderByIdAsc(bookId, middleId, Limit.of(100));
+    }
+
+    @Benchmark
+    public long countByBook() {
+        return buddyRepo.countByAddressBookId(bookId);
+    }
+
+    @Benchmark
+    public Iterable<BuddyInfo> findByNameAndAddress() {
+        return buddyRepo.findByNameAndAddress("name5000", "5000 Bench St");
+    }
+
+    @Benchmark
+    public Optional<BuddyInfo> findByDedupKey() {
+        return buddyRepo.findByAddressBookIdAndDedupKey(bookId, middleKey);
+    }
+
+    @Benchmark
+    public Optional<Long> findVersion() {
+        return abRepo.findVersionById(bookId);
+    }
+}
@@ -1,22 +1,61 @@
 package lab1;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @Entity
-@Table(name = "address_book")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "address_book", indexes = {
+        @Index(name = "idx_address_book_owner", columnList = "owner") // findByOwner
+})
 public class AddressBook {
 
+    /**
+     * Pooled sequence rather than IDENTITY: Hibernate can hand out ids in memory
+     * and JDBC-batch the inserts. allocationSize must match the sequence increment.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "address_book_seq")
+    @SequenceGenerator(name = "address_book_seq", sequenceName = "address_book_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
     private String owner;
 
+    /**
+     * Bumped on every change to the book or its buddies (mutations lock the book with
+     * PESSIMISTIC_FORCE_INCREMENT); the ETag of the book's read endpoints is derived from it.
+     */
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    /**
+     * Delta-sync position: the change_seq of the last transaction that changed a buddy of this
+     * book. Maintained in SQL by ChangeSequenceListener, never written through the entity.
+     */
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "change_seq", nullable = false, insertable = false, updatable = false)
+    private long changeSeq;
+
+    /** Highest change_seq whose tombstones were compacted away; older sync positions need a full sync. */
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "sync_floor", nullable = false, insertable = false, updatable = false)
+    private long syncFloor;
+
     @OneToMany(
             mappedBy = "addressBook",
             cascade = CascadeType.ALL,
@@ -24,6 +63,8 @@ public class AddressBook {
             fetch = FetchType.LAZY
     )
     @JsonManagedReference
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = AddressBookController.MAX_BATCH_IDS) // batch-get without a buddyLimit initializes every book's buddies in one fetch
     private List<BuddyInfo> buddies = new ArrayList<>();
 
     /** JPA requires a no-args constructor. */
@@ -35,6 +76,8 @@ public class AddressBook {
 
     public Long getId() { return id; }
 
+    public Long getVersion() { return version; }
+
     public String getOwner() { return owner; }
     public void setOwner(String owner) {
         if (owner == null || owner.isBlank()) {
@@ -45,18 +88,50 @@ public class AddressBook {
 
     public List<BuddyInfo> getBuddies() { return buddies; }
 
-    /** Keep both sides of the relationship in sync. */
+    /**
+     * Hashed index of {@link #buddies} by {@link BuddyInfo#getDedupKey()}, built on first
+     * use and maintained by the add/remove methods so duplicate checks are O(1).
+     * Buddies edited in place after being added keep their original index entry.
+     */
+    @Transient
+    private Map<String, BuddyInfo> buddyIndex;
+
+    /** Keep both sides of the relationship in sync; duplicates are skipped. */
     public void addBuddy(BuddyInfo buddy) {
+        addBuddy(buddy, DuplicatePolicy.SKIP);
+    }
+
+    /**
+     * Adds a buddy unless the book already holds one with the same business key,
+     * in which case {@code policy} decides. Returns the buddy now held by the book.
+     */
+    public BuddyInfo addBuddy(BuddyInfo buddy, DuplicatePolicy policy) {
         if (buddy == null) throw new IllegalArgumentException("buddy cannot be null");
-        if (!buddies.contains(buddy)) {
+        Map<String, BuddyInfo> index = buddyIndex();
+        BuddyInfo existing = index.get(buddy.getDedupKey());
+        if (existing == null) {
             buddies.add(buddy);
             buddy.setAddressBook(this);
+            index.put(buddy.getDedupKey(), buddy);
+            return buddy;
+        }
+        if (existing == buddy) return existing;
+        switch (policy) {
+            case REJECT -> throw new DuplicateBuddyException(buddy);
+            case UPSERT -> {
+                existing.setName(buddy.getName());
+                existing.setPhone(buddy.getPhone());
+                existing.setAddress(buddy.getAddress());
+            }
+            case SKIP -> { }
         }
+        return existing;
     }
 
     public void removeBuddy(BuddyInfo buddy) {
         if (buddy == null) return;
         if (buddies.remove(buddy)) {
+            unindex(buddy);
             buddy.setAddressBook(null);
         }
     }
@@ -66,11 +141,26 @@ public class AddressBook {
         if (buddyId == null) return;
         buddies.removeIf(b -> {
             boolean match = buddyId.equals(b.getId());
-            if (match) b.setAddressBook(null);
+            if (match) {
+                unindex(b);
+                b.setAddressBook(null);
+            }
             return match;
         });
     }
 
+    private Map<String, BuddyInfo> buddyIndex() {
+        if (buddyIndex == null) {
+            buddyIndex = new HashMap<>(Math.max(16, buddies.size() * 2));
+            for (BuddyInfo b : buddies) buddyIndex.putIfAbsent(b.getDedupKey(), b);
+        }
+        return buddyIndex;
+    }
+
+    private void unindex(BuddyInfo buddy) {
+        if (buddyIndex != null) buddyIndex.remove(buddy.getDedupKey(), buddy);
+    }
+
     public int size() { return buddies.size(); }
 
     @Override
@@ -0,0 +1,32 @@
+package lab1;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Answer to POST /addressbooks/batch-get: one entry per requested id, in request order.
+ * A found entry carries the book (its buddies possibly cut to the requested limit, lowest ids
+ * first) and the book's full buddy count; an unknown id is just {@code {"id": 9, "found": false}}.
+ */
+public record AddressBookBatch(List<Entry> results) {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Entry(Long id, boolean found, Integer buddyCount, AddressBookView book) {
+
+        static Entry of(AddressBook book) {
+            return new Entry(book.getId(), true, book.size(), AddressBookView.of(book));
+        }
+
+        /** A book whose buddies were cut to {@code buddyLimit} in SQL: {@code rows} holds the first ones and the count. */
+        static Entry of(AddressBook book, List<BatchBuddyRow> rows, int buddyLimit) {
+            List<BuddyView> buddies = rows.stream().limit(buddyLimit).map(BatchBuddyRow::view).toList();
+            int count = rows.isEmpty() ? 0 : rows.get(0).total().intValue();
+            return new Entry(book.getId(), true, count, new AddressBookView(book.getId(), book.getOwner(), book.getVersion(), buddies));
+        }
+
+        static Entry notFound(Long id) {
+            return new Entry(id, false, null, null);
+        }
+    }
+}
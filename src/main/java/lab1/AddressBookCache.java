@@ -0,0 +1,72 @@
+package lab1;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Second-level cache invalidation that Hibernate cannot do on its own: inserting or deleting
+ * a BuddyInfo directly (without going through AddressBook.buddies) leaves the cached
+ * collection of its book stale, and a FORCE_INCREMENT version bump is written
+ * to the database but not to the cached AddressBook.
+ * <p>
+ * With read replicas, a read shortly after a commit may load the pre-commit state from a
+ * lagging replica and cache it; books are therefore evicted once more after max-lag.
+ */
+@Component
+public class AddressBookCache {
+    static final String BUDDIES_REGION = AddressBook.class.getName() + ".buddies";
+
+    private final EntityManagerFactory emf;
+    private final long replicaLagMillis;
+    private final ScheduledExecutorService delayed;
+
+    public AddressBookCache(EntityManagerFactory emf,
+                            @Value("${addressbook.replicas.enabled:false}") boolean replicas,
+                            @Value("${addressbook.replicas.max-lag:2s}") Duration maxLag) {
+        this.emf = emf;
+        this.replicaLagMillis = maxLag.toMillis();
+        this.delayed = !replicas ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-lag-evict");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Evicts a book and its cached buddies collection now and, if a transaction is active,
+     * again after it commits so a concurrent reader cannot re-cache the pre-commit state.
+     */
+    public void evictBook(Long bookId) {
+        evictNow(bookId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(bookId);
+                    if (delayed != null) delayed.schedule(() -> evictNow(bookId), replicaLagMillis, TimeUnit.MILLISECONDS);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (delayed != null) delayed.shutdownNow();
+    }
+
+    private void evictNow(Long bookId) {
+        Cache cache = emf.getCache().unwrap(Cache.class);
+        cache.evictEntityData(AddressBook.class, bookId);
+        cache.evictCollectionData(BUDDIES_REGION, bookId);
+    }
+}
@@ -1,73 +1,265 @@
 package lab1;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/addressbooks")
 public class AddressBookController {
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BATCH_IDS = 1000;
+
     private final AddressBookRepository abRepo;
     private final BuddyInfoRepository buddyRepo;
+    private final AddressBookCache cache;
+    private final AddressBookMetrics metrics;
+    private final BuddySearchIndex searchIndex;
+    private final BuddyBulkService bulk;
+    private final ObjectProvider<ShardedBooks> shardedBooks;
 
-    public AddressBookController(AddressBookRepository abRepo, BuddyInfoRepository buddyRepo) {
+    public AddressBookController(AddressBookRepository abRepo, BuddyInfoRepository buddyRepo,
+                                 AddressBookCache cache, AddressBookMetrics metrics,
+                                 BuddySearchIndex searchIndex, BuddyBulkService bulk,
+                                 ObjectProvider<ShardedBooks> shardedBooks) {
         this.abRepo = abRepo;
         this.buddyRepo = buddyRepo;
+        this.cache = cache;
+        this.metrics = metrics;
+        this.searchIndex = searchIndex;
+        this.bulk = bulk;
+        this.shardedBooks = shardedBooks;
     }
 
-    // Create an address book
+    // Create an address book (on its own shard when sharding is enabled)
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public AddressBook create(@RequestBody AddressBook ab) {
-        return abRepo.save(ab);
+        ShardedBooks sharded = shardedBooks.getIfAvailable();
+        return sharded != null ? sharded.create(ab) : abRepo.save(ab);
     }
 
     // Get an address book (with buddies)
+    // Read-only transactions here and below go to a read replica when those are enabled.
+    // Carries an ETag from the book's version; a matching If-None-Match gets 304 after a
+    // single version lookup, without loading or serializing the book.
+    // The book still loads through the second-level cache (a warm read runs no query) but is
+    // copied into a record before the transaction ends; read endpoints never render entities.
     @GetMapping("/{id}")
-    public AddressBook get(@PathVariable Long id) {
-        return abRepo.findById(id).orElseThrow();
+    @Transactional(readOnly = true)
+    public AddressBookView get(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(etag(abRepo.findVersionById(id).orElseThrow()))) {
+            return null;
+        }
+        AddressBook book = abRepo.findById(id).orElseThrow();
+        if (book.getVersion() != null) request.checkNotModified(etag(book.getVersion()));
+        metrics.recordBuddyCount(book.size());
+        return AddressBookView.of(book);
+    }
+
+    // Many books in one round trip: POST /addressbooks/batch-get [3, 1, 2]?buddyLimit=10
+    // One IN query for the books and one batched fetch for all their buddies, not one GET each.
+    // Results follow the request order, unknown ids marked "found": false; buddyLimit keeps
+    // each book's first buddies (lowest ids) and buddyCount tells the full size. The limit is
+    // applied in SQL, by a window over each book's buddies, so large books are never loaded whole.
+    @PostMapping("/batch-get")
+    public AddressBookBatch batchGet(@RequestBody List<Long> ids,
+                                     @RequestParam(required = false) Integer buddyLimit) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "at most " + MAX_BATCH_IDS + " ids per batch");
+        }
+        Set<Long> unique = new LinkedHashSet<>(ids);
+        unique.remove(null);
+        Map<Long, AddressBookBatch.Entry> byId = new HashMap<>();
+        if (!unique.isEmpty()) {
+            for (AddressBookBatch.Entry e : findBatchEntries(unique, buddyLimit)) byId.put(e.id(), e);
+        }
+        List<AddressBookBatch.Entry> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            AddressBookBatch.Entry entry = byId.get(id);
+            results.add(entry == null ? AddressBookBatch.Entry.notFound(id) : entry);
+        }
+        return new AddressBookBatch(results);
+    }
+
+    private List<AddressBookBatch.Entry> findBatchEntries(Set<Long> ids, Integer buddyLimit) {
+        ShardedBooks sharded = shardedBooks.getIfAvailable();
+        if (buddyLimit != null) {
+            int limit = Math.max(0, buddyLimit);
+            return sharded != null ? sharded.findBatchEntries(ids, limit) : abRepo.findBatchEntriesById(ids, limit);
+        }
+        List<AddressBook> books = sharded != null ? sharded.findBooksWithBuddies(ids) : abRepo.findAllWithBuddiesById(ids);
+        return books.stream().map(AddressBookBatch.Entry::of).toList();
+    }
+
+    /** Strong ETag for a book version, shared with the HTML view. */
+    static String etag(long version) {
+        return "\"v" + version + "\"";
+    }
+
+    // Summary only: GET /addressbooks/1?view=summary -> { "id": 1, "owner": "...", "buddyCount": 42 }
+    @GetMapping(value = "/{id}", params = "view=summary")
+    @Transactional(readOnly = true)
+    public AddressBookSummary summary(@PathVariable Long id) {
+        AddressBookSummary summary = abRepo.findSummaryById(id).orElseThrow();
+        metrics.recordBuddyCount(summary.buddyCount());
+        return summary;
+    }
+
+    // Keyset-paged buddies: GET /addressbooks/1/buddies?after=120&limit=50
+    // Pass the returned "next" as "after" to continue; cost does not depend on book size.
+    @GetMapping("/{id}/buddies")
+    @Transactional(readOnly = true)
+    public BuddyPage listBuddies(@PathVariable Long id,
+                                 @RequestParam(defaultValue = "0") long after,
+                                 @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // fetch one extra row to learn whether another page exists
+        List<BuddyView> rows = buddyRepo.findViewsByAddressBookIdAndIdGreaterThanOrderByIdAsc(id, after, Limit.of(pageSize + 1));
+        if (rows.isEmpty() && !abRepo.existsById(id)) throw new NoSuchElementException("address book " + id);
+        if (rows.size() <= pageSize) return new BuddyPage(rows, null);
+        List<BuddyView> page = rows.subList(0, pageSize);
+        return new BuddyPage(page, page.get(pageSize - 1).id());
     }
 
     // Add a buddy to an address book: { "name": "John", "phone": "123" }
+    // Inserts the buddy row directly; the book row is read (and its version bumped) but its
+    // buddies collection is never loaded. Responds 201 with the buddy and its Location.
+    // A buddy with the same business key is handled per ?onDuplicate=reject|skip|upsert
+    // (default skip): 409, or 200 with the existing (possibly updated) buddy.
+    // Concurrent writers to the same book are retried with backoff; 409 if they keep conflicting.
     @PostMapping("/{id}/buddies")
-    public AddressBook addBuddy(@PathVariable Long id, @RequestBody BuddyInfo buddy) {
-        AddressBook book = abRepo.findById(id).orElseThrow();
-        book.addBuddy(buddy);
-        return abRepo.save(book);
+    @RetryOnConflict
+    @Transactional
+    public ResponseEntity<BuddyInfo> addBuddy(@PathVariable Long id, @RequestBody BuddyInfo buddy,
+                                              @RequestParam(defaultValue = "skip") DuplicatePolicy onDuplicate) {
+        Optional<BuddyInfo> existing = buddyRepo.findByAddressBookIdAndDedupKey(id, buddy.getDedupKey());
+        if (existing.isPresent()) {
+            if (onDuplicate == DuplicatePolicy.REJECT) throw new DuplicateBuddyException(buddy);
+            BuddyInfo current = existing.get();
+            if (onDuplicate == DuplicatePolicy.UPSERT) {
+                abRepo.findAndBumpVersionById(id);
+                cache.evictBook(id);
+                current.setName(buddy.getName());
+                current.setPhone(buddy.getPhone());
+                current.setAddress(buddy.getAddress());
+                searchIndex.putAfterCommit(id, current);
+            }
+            return ResponseEntity.ok(current);
+        }
+        BuddyInfo fresh = buddy.copy(); // an earlier, rolled-back attempt may have left an id on buddy
+        fresh.setAddressBook(abRepo.findAndBumpVersionById(id).orElseThrow());
+        BuddyInfo saved = buddyRepo.save(fresh);
+        cache.evictBook(id);
+        searchIndex.putAfterCommit(id, saved);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest().replaceQuery(null)
+                .path("/{buddyId}").buildAndExpand(saved.getId()).toUri();
+        return ResponseEntity.created(location).body(saved);
+    }
+
+    // Get a single buddy of a book (target of the Location header above)
+    @GetMapping("/{id}/buddies/{buddyId}")
+    @Transactional(readOnly = true)
+    public BuddyView getBuddy(@PathVariable Long id, @PathVariable Long buddyId) {
+        return buddyRepo.findViewByIdAndAddressBookId(buddyId, id).orElseThrow();
     }
 
-    // Bulk add multiple buddies at once
+    // Bulk add multiple buddies at once; duplicates (within the payload or against the
+    // book) follow ?onDuplicate=reject|skip|upsert, default skip. Linear in book + payload size.
     @PostMapping("/{id}/buddies/bulk")
+    @RetryOnConflict
+    @Transactional
     public AddressBook addMultipleBuddies(@PathVariable Long id,
-                                          @RequestBody List<BuddyInfo> buddies) {
-        AddressBook book = abRepo.findById(id).orElseThrow();
+                                          @RequestBody List<BuddyInfo> buddies,
+                                          @RequestParam(defaultValue = "skip") DuplicatePolicy onDuplicate) {
+        AddressBook book = abRepo.findAndBumpVersionById(id).orElseThrow();
+        Set<String> touched = new HashSet<>();
         for (BuddyInfo b : buddies) {
-            book.addBuddy(b);
+            touched.add(book.addBuddy(b.copy(), onDuplicate).getDedupKey());
         }
-        return abRepo.save(book);
+        cache.evictBook(id);
+        AddressBook saved = abRepo.save(book);
+        // index the merged instances, which are the ones that carry ids
+        for (BuddyInfo b : saved.getBuddies()) {
+            if (touched.contains(b.getDedupKey())) searchIndex.putAfterCommit(id, b);
+        }
+        return saved;
     }
 
 
     // Remove a buddy by buddyId from an address book
+    // Loads just that buddy (scoped by address_book_id) and deletes it; the book's
+    // collection is never loaded, only its cached copy evicted.
     @DeleteMapping("/{id}/buddies/{buddyId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
+    @RetryOnConflict
+    @Transactional
     public void removeBuddy(@PathVariable Long id, @PathVariable Long buddyId) {
-        AddressBook book = abRepo.findById(id).orElseThrow();
-        book.removeBuddyById(buddyId);
-        abRepo.save(book);
+        Optional<BuddyInfo> buddy = buddyRepo.findByIdAndAddressBookId(buddyId, id);
+        if (buddy.isEmpty()) {
+            if (!abRepo.existsById(id)) throw new NoSuchElementException("address book " + id);
+            return;
+        }
+        abRepo.findAndBumpVersionById(id);
+        buddyRepo.delete(buddy.get());
+        cache.evictBook(id);
+        searchIndex.removeAfterCommit(id, buddyId);
+    }
+
+    // Remove many buddies of a book at once: POST /addressbooks/1/buddies/bulk-delete [10, 11, 12]
+    // Set-based deletes (a few statements per 1000 ids, none per buddy); the book's buddies are
+    // never loaded. Responds with the deleted ids, and as skipped those not in this book.
+    @PostMapping("/{id}/buddies/bulk-delete")
+    @RetryOnConflict
+    public BuddyBulkResult bulkDeleteBuddies(@PathVariable Long id, @RequestBody List<Long> buddyIds) {
+        return bulk.delete(id, buddyIds);
+    }
+
+    // Move buddies to another book, keeping their ids: POST /addressbooks/1/buddies/bulk-move?to=2 [10, 11]
+    // Set-based like bulk-delete. A buddy whose business key the target already holds fails the
+    // move (?onDuplicate=reject, 409) or stays where it is (skip, the default). Books must be on
+    // the same shard when sharding is enabled.
+    @PostMapping("/{id}/buddies/bulk-move")
+    @RetryOnConflict
+    @SuppressWarnings("try") // the pin is held for the try block, never referenced in it
+    public BuddyBulkResult bulkMoveBuddies(@PathVariable Long id, @RequestParam Long to,
+                                           @RequestBody List<Long> buddyIds,
+                                           @RequestParam(defaultValue = "skip") DuplicatePolicy onDuplicate) {
+        if (to.equals(id)) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "cannot move buddies to the same book");
+        if (onDuplicate == DuplicatePolicy.UPSERT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "onDuplicate must be reject or skip for a move");
+        }
+        if (!bulk.canMove(id, to)) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "book " + to + " is on another shard");
+        try (ShardContext.Pin pin = ShardContext.pin(to)) {
+            return bulk.move(id, to, buddyIds, onDuplicate);
+        }
     }
 
     // delete an entire address book
+    // Its buddies go in one statement, whatever their number, instead of one delete each.
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteBook(@PathVariable Long id) {
-        abRepo.deleteById(id);
+        bulk.deleteBook(id);
     }
-
-    // Simple error mapping
-    @ResponseStatus(HttpStatus.NOT_FOUND)
-    @ExceptionHandler(NoSuchElementException.class)
-    public String notFound(NoSuchElementException e) { return "Not found"; }
 }
@@ -0,0 +1,24 @@
+package lab1;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/** Application meters that the actuator does not already provide. */
+@Component
+public class AddressBookMetrics {
+    private final DistributionSummary buddiesPerBook;
+
+    public AddressBookMetrics(MeterRegistry registry) {
+        this.buddiesPerBook = DistributionSummary.builder("addressbook.buddies.per.book")
+                .description("Buddy count of each address book served")
+                .baseUnit("buddies")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /** Records the size of a book whenever a read already knows it; costs no extra query. */
+    public void recordBuddyCount(long count) {
+        buddiesPerBook.record(count);
+    }
+}
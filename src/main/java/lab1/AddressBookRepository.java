@@ -1,8 +1,89 @@
 package lab1;
 
-import org.springframework.data.repository.CrudRepository;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-public interface AddressBookRepository extends CrudRepository<AddressBook, Long> {
+public interface AddressBookRepository extends JpaRepository<AddressBook, Long> {
+    @Transactional(readOnly = true)
     Optional<AddressBook> findByOwner(String owner);
+
+    @Transactional(readOnly = true)
+    List<AddressBook> findAllByOwner(String owner);
+
+    /**
+     * Books by id, buddies initialized: one IN query for the books, then one batched fetch
+     * (AddressBook.buddies is @BatchSize) for the buddies of all books not in the cache.
+     * Unknown ids are left out; the order is the database's.
+     */
+    @Transactional(readOnly = true)
+    default List<AddressBook> findAllWithBuddiesById(Collection<Long> ids) {
+        List<AddressBook> books = findAllById(ids);
+        books.forEach(AddressBook::size);
+        return books;
+    }
+
+    /**
+     * Each book's first {@code rows} buddies by id, every row carrying its book's full buddy
+     * count: one windowed query, whatever the size of the books. Books without buddies have no rows.
+     */
+    @Transactional(readOnly = true)
+    @Query("select new lab1.BatchBuddyRow(x.bookId, x.id, x.name, x.phone, x.address, x.total) from ("
+            + "select b.addressBook.id as bookId, b.id as id, b.name as name, b.phone as phone, b.address as address,"
+            + " row_number() over (partition by b.addressBook.id order by b.id) as rn,"
+            + " count(*) over (partition by b.addressBook.id) as total"
+            + " from BuddyInfo b where b.addressBook.id in :bookIds) x"
+            + " where x.rn <= :rows order by x.bookId, x.id")
+    List<BatchBuddyRow> findFirstBuddies(Collection<Long> bookIds, long rows);
+
+    /**
+     * Batch-get entries for books by id with at most {@code buddyLimit} buddies each (lowest
+     * ids first): one IN query for the books and {@link #findFirstBuddies}, so no buddy past
+     * the limit is read. Unknown ids are left out; the order is the database's.
+     */
+    @Transactional(readOnly = true)
+    default List<AddressBookBatch.Entry> findBatchEntriesById(Collection<Long> ids, int buddyLimit) {
+        Map<Long, List<BatchBuddyRow>> rows = new HashMap<>();
+        // at least one row per book, which carries its count
+        for (BatchBuddyRow r : findFirstBuddies(ids, Math.max(1, buddyLimit))) {
+            rows.computeIfAbsent(r.bookId(), k -> new ArrayList<>()).add(r);
+        }
+        List<AddressBookBatch.Entry> entries = new ArrayList<>();
+        for (AddressBook book : findAllById(ids)) {
+            entries.add(AddressBookBatch.Entry.of(book, rows.getOrDefault(book.getId(), List.of()), buddyLimit));
+        }
+        return entries;
+    }
+
+    /**
+     * Loads the book (not its buddies) with its row locked, and bumps its version. Writers to
+     * one book queue on the lock and each reads the version the previous one committed, rather
+     * than all reading the same version and failing the check one after another at commit.
+     */
+    @Lock(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
+    Optional<AddressBook> findAndBumpVersionById(Long id);
+
+    /** Just the version column, for conditional GETs. */
+    @Transactional(readOnly = true)
+    @Query("select a.version from AddressBook a where a.id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    /** Owner and buddy count in one grouped query; neither the book nor its buddies are loaded. */
+    @Transactional(readOnly = true)
+    @Query("select new lab1.AddressBookSummary(a.id, a.owner, count(b.id)) from AddressBook a left join a.buddies b"
+            + " where a.id = :id group by a.id, a.owner")
+    Optional<AddressBookSummary> findSummaryById(Long id);
+
+    /** The book's delta-sync position and compaction floor, read from the table (never the cache). */
+    @Transactional(readOnly = true)
+    @Query("select new lab1.SyncPosition(a.changeSeq, a.syncFloor) from AddressBook a where a.id = :id")
+    Optional<SyncPosition> findSyncPositionById(Long id);
 }
@@ -0,0 +1,4 @@
+package lab1;
+
+/** Lightweight view of an address book: owner and buddy count, no buddies. */
+public record AddressBookSummary(Long id, String owner, long buddyCount) {}
@@ -0,0 +1,17 @@
+package lab1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GET /addressbooks/{id}: the book and its buddies, copied out of the persistence context
+ * inside the read transaction so rendering never touches a managed entity.
+ */
+public record AddressBookView(Long id, String owner, Long version, List<BuddyView> buddies) {
+
+    static AddressBookView of(AddressBook book) {
+        List<BuddyView> buddies = new ArrayList<>(book.size());
+        for (BuddyInfo b : book.getBuddies()) buddies.add(BuddyView.of(b));
+        return new AddressBookView(book.getId(), book.getOwner(), book.getVersion(), buddies);
+    }
+}
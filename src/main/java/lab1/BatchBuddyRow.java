@@ -0,0 +1,12 @@
+package lab1;
+
+/**
+ * One of a book's first buddies for POST /addressbooks/batch-get?buddyLimit=N, with the book's
+ * full buddy count (both from window functions, see AddressBookRepository#findFirstBuddies).
+ */
+public record BatchBuddyRow(Long bookId, Long id, String name, String phone, String address, Long total) {
+
+    BuddyView view() {
+        return new BuddyView(id, name, phone, address);
+    }
+}
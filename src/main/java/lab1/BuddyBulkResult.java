@@ -0,0 +1,9 @@
+package lab1;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk delete or move: the buddy ids acted on, and the requested ones left alone
+ * (not buddies of the book, or for a move, already in the target by business key).
+ */
+public record BuddyBulkResult(List<Long> affected, List<Long> skipped) {}
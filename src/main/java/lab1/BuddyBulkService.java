@@ -0,0 +1,202 @@
+package lab1;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Bulk delete and move of buddies, and book deletion, as set-based statements on buddy_info
+ * keyed by address_book_id: a handful per {@value #CHUNK} ids however large the book, where
+ * the entity path loads and deletes each buddy on its own.
+ * <p>
+ * Those statements bypass the entity events, so this does by hand what the listeners and the
+ * per-buddy endpoints otherwise do: bumps the books' versions (ETags, optimistic conflicts) and
+ * change_seq, writes tombstones for delta sync, evicts the books from the second-level cache,
+ * and after commit updates the search index and publishes to the change feed. Hibernate itself
+ * only clears the BuddyInfo cache region around each statement.
+ */
+@Service
+public class BuddyBulkService {
+    /** Ids per statement, bounding the IN list. */
+    static final int CHUNK = 1000;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final AddressBookRepository abRepo;
+    private final BuddyInfoRepository buddyRepo;
+    private final BuddyTombstoneRepository tombstones;
+    private final ChangeSequenceListener changeSeqs;
+    private final AddressBookCache cache;
+    private final BuddySearchIndex searchIndex;
+    private final BuddyChangeFeed feed;
+    private final ObjectProvider<ShardDirectory> shards;
+
+    public BuddyBulkService(AddressBookRepository abRepo, BuddyInfoRepository buddyRepo,
+                            BuddyTombstoneRepository tombstones, ChangeSequenceListener changeSeqs,
+                            AddressBookCache cache, BuddySearchIndex searchIndex, BuddyChangeFeed feed,
+                            ObjectProvider<ShardDirectory> shards) {
+        this.abRepo = abRepo;
+        this.buddyRepo = buddyRepo;
+        this.tombstones = tombstones;
+        this.changeSeqs = changeSeqs;
+        this.cache = cache;
+        this.searchIndex = searchIndex;
+        this.feed = feed;
+        this.shards = shards;
+    }
+
+    /** Deletes those of {@code buddyIds} that are buddies of the book; the rest come back as skipped. */
+    @Transactional
+    public BuddyBulkResult delete(Long bookId, List<Long> buddyIds) {
+        AddressBook book = lockBook(bookId);
+        Set<Long> requested = unique(buddyIds);
+        List<Long> deleted = new ArrayList<>();
+        for (List<Long> chunk : chunks(requested)) {
+            List<Long> present = buddyRepo.findIdsByAddressBookIdAndIdIn(bookId, chunk);
+            if (present.isEmpty()) continue;
+            if (deleted.isEmpty()) em.lock(book, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+            tombstones.insertFor(bookId, present, changeSeqs.seqFor(bookId, em), System.currentTimeMillis());
+            buddyRepo.deleteByAddressBookIdAndIdIn(bookId, present);
+            deleted.addAll(present);
+        }
+        if (deleted.isEmpty()) return new BuddyBulkResult(List.of(), List.copyOf(requested));
+        cache.evictBook(bookId);
+        afterCommit(() -> {
+            for (Long id : deleted) {
+                searchIndex.remove(bookId, id);
+                feed.publish(BuddyChange.removed(bookId, id));
+            }
+        });
+        return new BuddyBulkResult(deleted, skipped(requested, deleted));
+    }
+
+    /**
+     * Whether buddies can move between the two books: always, unless they live on different
+     * shards. Callers pin the target book (the request already pins the source) until commit.
+     */
+    public boolean canMove(Long fromId, Long toId) {
+        ShardDirectory directory = shards.getIfAvailable();
+        return directory == null || directory.shardOf(fromId) == directory.shardOf(toId);
+    }
+
+    /**
+     * Moves those of {@code buddyIds} that are buddies of book {@code fromId} to book
+     * {@code toId}, keeping their ids. One whose business key the target already holds fails
+     * the whole move under {@link DuplicatePolicy#REJECT}, and stays behind (skipped) under
+     * {@link DuplicatePolicy#SKIP}; upserting across books is not supported.
+     */
+    @Transactional
+    public BuddyBulkResult move(Long fromId, Long toId, List<Long> buddyIds, DuplicatePolicy onDuplicate) {
+        if (onDuplicate == DuplicatePolicy.UPSERT) throw new IllegalArgumentException("onDuplicate=upsert is not supported for moves");
+        // both rows in id order, so two opposite moves cannot deadlock
+        AddressBook first = lockBook(Math.min(fromId, toId));
+        AddressBook second = lockBook(Math.max(fromId, toId));
+        AddressBook from = fromId < toId ? first : second;
+        AddressBook to = fromId < toId ? second : first;
+        Set<Long> requested = unique(buddyIds);
+        List<BuddyView> moved = new ArrayList<>();
+        for (List<Long> chunk : chunks(requested)) {
+            List<BuddyView> present = buddyRepo.findViewsByAddressBookIdAndIdIn(fromId, chunk);
+            if (present.isEmpty()) continue;
+            Set<Long> clashing = new HashSet<>(buddyRepo.findIdsDuplicatedInBook(fromId, toId, chunk));
+            if (!clashing.isEmpty() && onDuplicate == DuplicatePolicy.REJECT) {
+                throw new DuplicateBuddyException("address book " + toId + " already has buddies like " + clashing);
+            }
+            List<Long> ids = new ArrayList<>(present.size());
+            for (BuddyView b : present) {
+                if (clashing.contains(b.id())) continue;
+                ids.add(b.id());
+                moved.add(b);
+            }
+            if (ids.isEmpty()) continue;
+            if (moved.size() == ids.size()) bumpBoth(from, to);
+            tombstones.insertFor(fromId, ids, changeSeqs.seqFor(fromId, em), System.currentTimeMillis());
+            tombstones.deleteFor(toId, ids);
+            buddyRepo.moveToBook(fromId, to, changeSeqs.seqFor(toId, em), ids);
+        }
+        if (moved.isEmpty()) return new BuddyBulkResult(List.of(), List.copyOf(requested));
+        List<Long> movedIds = moved.stream().map(BuddyView::id).toList();
+        cache.evictBook(fromId);
+        cache.evictBook(toId);
+        afterCommit(() -> {
+            for (BuddyView b : moved) {
+                searchIndex.remove(fromId, b.id());
+                searchIndex.put(toId, new BuddySearchHit(b.id(), b.name(), b.phone(), b.address()));
+                feed.publish(BuddyChange.of(BuddyChange.Type.REMOVED, fromId, b));
+                feed.publish(BuddyChange.of(BuddyChange.Type.ADDED, toId, b));
+            }
+        });
+        return new BuddyBulkResult(movedIds, skipped(requested, movedIds));
+    }
+
+    /**
+     * Deletes the book with one statement for all its buddies, so the cascade from the book
+     * finds none left to load and delete one by one. A no-op for an unknown book.
+     */
+    @Transactional
+    public void deleteBook(Long bookId) {
+        Optional<AddressBook> book = abRepo.findById(bookId);
+        if (book.isEmpty()) return;
+        buddyRepo.deleteAllByAddressBookId(bookId);
+        cache.evictBook(bookId); // before the cascade, so it finds the collection empty rather than cached
+        abRepo.delete(book.get());
+        searchIndex.removeBookAfterCommit(bookId);
+    }
+
+    /**
+     * The book with its row locked until commit, so concurrent writers to it wait here rather
+     * than fail the version check later; the version is bumped only once something changes.
+     */
+    private AddressBook lockBook(Long bookId) {
+        AddressBook book = em.find(AddressBook.class, bookId, LockModeType.PESSIMISTIC_WRITE);
+        if (book == null) throw new NoSuchElementException("address book " + bookId);
+        return book;
+    }
+
+    private void bumpBoth(AddressBook from, AddressBook to) {
+        em.lock(from, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        em.lock(to, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        changeSeqs.seqFor(from.getId(), em);
+        changeSeqs.seqFor(to.getId(), em);
+    }
+
+    private static Set<Long> unique(List<Long> ids) {
+        Set<Long> unique = new LinkedHashSet<>(ids);
+        unique.remove(null);
+        return unique;
+    }
+
+    private static List<List<Long>> chunks(Set<Long> ids) {
+        List<Long> all = new ArrayList<>(ids);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += CHUNK) chunks.add(all.subList(i, Math.min(i + CHUNK, all.size())));
+        return chunks;
+    }
+
+    private static List<Long> skipped(Set<Long> requested, List<Long> done) {
+        Set<Long> rest = new LinkedHashSet<>(requested);
+        done.forEach(rest::remove);
+        return List.copyOf(rest);
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() { action.run(); }
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package lab1;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One committed change to an address book, as sent on GET /addressbooks/{id}/changes.
+ * Removals and book deletions carry no contact fields; those are left out of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BuddyChange(Type type, long addressBookId, Long buddyId, String name, String phone, String address) {
+
+    public enum Type {
+        ADDED("buddy-added"), UPDATED("buddy-updated"), REMOVED("buddy-removed"), BOOK_DELETED("book-deleted");
+
+        private final String event;
+
+        Type(String event) {
+            this.event = event;
+        }
+
+        /** The SSE event name. */
+        public String event() {
+            return event;
+        }
+    }
+
+    static BuddyChange of(Type type, long bookId, BuddyInfo buddy) {
+        return type == Type.REMOVED
+                ? new BuddyChange(type, bookId, buddy.getId(), null, null, null)
+                : new BuddyChange(type, bookId, buddy.getId(), buddy.getName(), buddy.getPhone(), buddy.getAddress());
+    }
+
+    static BuddyChange of(Type type, long bookId, BuddyView buddy) {
+        return type == Type.REMOVED
+                ? new BuddyChange(type, bookId, buddy.id(), null, null, null)
+                : new BuddyChange(type, bookId, buddy.id(), buddy.name(), buddy.phone(), buddy.address());
+    }
+
+    static BuddyChange removed(long bookId, Long buddyId) {
+        return new BuddyChange(Type.REMOVED, bookId, buddyId, null, null, null);
+    }
+
+    static BuddyChange bookDeleted(long bookId) {
+        return new BuddyChange(Type.BOOK_DELETED, bookId, null, null, null, null);
+    }
+}
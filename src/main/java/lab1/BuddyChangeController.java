@@ -0,0 +1,30 @@
+package lab1;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/addressbooks")
+public class BuddyChangeController {
+    private final AddressBookRepository abRepo;
+    private final BuddyChangeFeed feed;
+
+    public BuddyChangeController(AddressBookRepository abRepo, BuddyChangeFeed feed) {
+        this.abRepo = abRepo;
+        this.feed = feed;
+    }
+
+    // Live feed of committed changes to a book, instead of re-polling GET /addressbooks/{id}:
+    // GET /addressbooks/1/changes (text/event-stream); events buddy-added, buddy-updated,
+    // buddy-removed and book-deleted, each with a JSON BuddyChange. A reconnect sending
+    // Last-Event-ID gets what it missed, or a "reset" event when that is no longer known.
+    @GetMapping(value = "/{id}/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(@PathVariable Long id,
+                              @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (!abRepo.existsById(id)) throw new NoSuchElementException("address book " + id);
+        return feed.subscribe(id, lastEventId);
+    }
+}
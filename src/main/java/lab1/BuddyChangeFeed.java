@@ -0,0 +1,298 @@
+package lab1;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events fan-out of committed book changes (fed by BuddyChangeListener).
+ * <ul>
+ *   <li>Each event is encoded once; subscribers of its book share the encoded frame.</li>
+ *   <li>Publishing only offers the frame to each subscriber's bounded buffer; a small pool of
+ *       sender threads writes buffers out. A subscriber whose buffer is full is disconnected
+ *       (its browser reconnects with Last-Event-ID), so a slow client never holds up the
+ *       others or the committing thread.</li>
+ *   <li>The latest {@code replay-size} events (all books) are kept for Last-Event-ID resume.
+ *       Event ids grow across restarts; when the missed events are gone, or are more than a
+ *       buffer's worth, the subscriber gets a "reset" event instead and should re-fetch the book.</li>
+ * </ul>
+ * An idle stream gets a comment every {@code heartbeat}, which also finds disconnected clients.
+ */
+@Component
+public class BuddyChangeFeed implements SmartLifecycle {
+    static final String RESET_EVENT = "reset";
+
+    private final ObjectMapper json;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final long heartbeatMillis;
+    private final int senderThreads;
+    private final Counter dropped;
+
+    // recent events, a ring; it also guards lastId and the order frames reach subscribers
+    private final Event[] recent;
+    private int next;
+    private int size;
+    private long lastId = System.currentTimeMillis() * 1000;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Frame keepalive = new Frame(SseEmitter.event().comment("keepalive").build(), false);
+    private final Frame end = new Frame(null, true);
+    private volatile boolean running;
+    private ExecutorService senders;
+    private ScheduledExecutorService heartbeat;
+
+    public BuddyChangeFeed(ObjectMapper json,
+                           MeterRegistry registry,
+                           @Value("${addressbook.changes.buffer-size:256}") int bufferSize,
+                           @Value("${addressbook.changes.replay-size:10000}") int replaySize,
+                           @Value("${addressbook.changes.timeout:30m}") Duration timeout,
+                           @Value("${addressbook.changes.heartbeat:15s}") Duration heartbeat,
+                           @Value("${addressbook.changes.senders:8}") int senderThreads) {
+        this.json = json;
+        this.bufferSize = bufferSize;
+        this.recent = new Event[replaySize];
+        this.timeoutMillis = timeout.toMillis();
+        this.heartbeatMillis = heartbeat.toMillis();
+        this.senderThreads = senderThreads;
+        this.dropped = Counter.builder("addressbook.changes.dropped")
+                .description("Change-feed subscribers disconnected for falling a full buffer behind")
+                .register(registry);
+        Gauge.builder("addressbook.changes.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open change-feed streams")
+                .register(registry);
+    }
+
+    /** Sends {@code change} to the subscribers of its book and keeps it for resuming ones. */
+    public void publish(BuddyChange change) {
+        String data;
+        try {
+            data = json.writeValueAsString(change);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        boolean last = change.type() == BuddyChange.Type.BOOK_DELETED;
+        synchronized (recent) {
+            long id = ++lastId;
+            Frame frame = new Frame(SseEmitter.event().id(Long.toString(id)).name(change.type().event()).data(data).build(), last);
+            recent[next] = new Event(id, change.addressBookId(), frame);
+            next = (next + 1) % recent.length;
+            if (size < recent.length) size++;
+            Set<Subscriber> subs = subscribers.get(change.addressBookId());
+            if (subs != null) subs.forEach(s -> s.offer(frame));
+        }
+    }
+
+    /**
+     * Opens a stream for {@code bookId}. With {@code lastEventId} (the Last-Event-ID header of a
+     * reconnect) it first replays what the client missed, atomically with joining the live feed.
+     */
+    public SseEmitter subscribe(long bookId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber sub = new Subscriber(bookId, emitter);
+        emitter.onCompletion(() -> unregister(sub));
+        emitter.onError(e -> sub.close());
+        emitter.onTimeout(emitter::complete);
+        if (!running) {
+            emitter.complete();
+            return emitter;
+        }
+        sub.offer(new Frame(SseEmitter.event().comment("subscribed").build(), false)); // commits the response now
+        synchronized (recent) {
+            if (lastEventId != null) replay(sub, lastEventId);
+            sub.registered.set(true);
+            subscribers.compute(bookId, (k, set) -> {
+                if (set == null) set = ConcurrentHashMap.newKeySet();
+                set.add(sub);
+                return set;
+            });
+            subscriberCount.incrementAndGet();
+        }
+        return emitter;
+    }
+
+    // holds the ring's lock
+    private void replay(Subscriber sub, String lastEventId) {
+        long oldest = lastId - size + 1;
+        long from;
+        try {
+            from = Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            from = Long.MIN_VALUE;
+        }
+        List<Frame> missed = new ArrayList<>();
+        if (from >= oldest - 1 && from <= lastId) {
+            for (int i = 0; i < size; i++) {
+                Event e = recent[Math.floorMod(next - size + i, recent.length)];
+                if (e.id() > from && e.bookId() == sub.bookId) missed.add(e.frame());
+            }
+            if (missed.size() < bufferSize) {
+                missed.forEach(sub::offer);
+                return;
+            }
+        }
+        // resuming from here on is safe once the client has re-read the book
+        sub.offer(new Frame(SseEmitter.event().id(Long.toString(lastId)).name(RESET_EVENT).data("").build(), false));
+    }
+
+    private void unregister(Subscriber sub) {
+        if (!sub.registered.compareAndSet(true, false)) return;
+        subscribers.computeIfPresent(sub.bookId, (k, set) -> {
+            set.remove(sub);
+            return set.isEmpty() ? null : set;
+        });
+        subscriberCount.decrementAndGet();
+    }
+
+    /** Open streams, across all books. */
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @Override
+    public void start() {
+        senders = Executors.newFixedThreadPool(senderThreads, daemon("change-feed-sender"));
+        heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("change-feed-heartbeat"));
+        heartbeat.scheduleWithFixedDelay(() -> subscribers.values().forEach(set -> set.forEach(s -> s.offer(keepalive))),
+                heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    /** Ends every open stream, so the web server's graceful shutdown need not wait for them. */
+    @Override
+    public void stop() {
+        running = false;
+        heartbeat.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(s -> s.offer(end)));
+        senders.shutdown();
+        try {
+            senders.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Above the web server's phases: stops first, closing streams before graceful shutdown waits on them
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** An encoded SSE frame; {@code last} ends the stream after it (or, without data, instead of it). */
+    private record Frame(Set<DataWithMediaType> data, boolean last) {}
+
+    private record Event(long id, long bookId, Frame frame) {}
+
+    /** One open stream: its buffer, drained by at most one sender thread at a time. */
+    private final class Subscriber implements Runnable {
+        final long bookId;
+        final SseEmitter emitter;
+        final BlockingQueue<Frame> buffer = new ArrayBlockingQueue<>(bufferSize + 1); // + the "subscribed" comment
+        final AtomicBoolean registered = new AtomicBoolean();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean overflowed;
+        volatile boolean closed;
+
+        Subscriber(long bookId, SseEmitter emitter) {
+            this.bookId = bookId;
+            this.emitter = emitter;
+        }
+
+        void offer(Frame frame) {
+            if (closed || overflowed) return;
+            if (!buffer.offer(frame)) {
+                if (frame == keepalive) return; // a heartbeat has nothing to lose
+                overflowed = true;
+                unregister(this);
+                dropped.increment();
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    close(); // shutting down
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                drain();
+                scheduled.set(false);
+            } while (!closed && !buffer.isEmpty() && scheduled.compareAndSet(false, true));
+        }
+
+        private void drain() {
+            Frame frame;
+            while (!closed && (frame = buffer.poll()) != null) {
+                if (overflowed) {
+                    finish();
+                    return;
+                }
+                if (frame.data() != null) {
+                    try {
+                        emitter.send(frame.data());
+                    } catch (IOException | IllegalStateException e) {
+                        close(); // client went away, or the stream already ended
+                        return;
+                    }
+                }
+                if (frame.last()) {
+                    finish();
+                    return;
+                }
+            }
+        }
+
+        private void finish() {
+            close();
+            emitter.complete();
+        }
+
+        void close() {
+            closed = true;
+            buffer.clear();
+            unregister(this);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package lab1;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds BuddyChangeFeed from Hibernate's post-commit entity events, so only changes that were
+ * committed go out, whichever code path made them (REST, import, write-behind queue). The book
+ * is read from the entity state Hibernate wrote, which still names it after an orphan removal.
+ */
+@Component
+public class BuddyChangeListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+    private static final String BOOK_PROPERTY = "addressBook";
+
+    private final BuddyChangeFeed feed;
+
+    public BuddyChangeListener(EntityManagerFactory emf, BuddyChangeFeed feed) {
+        this.feed = feed;
+        EventListenerRegistry listeners = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        listeners.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        listeners.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return type == BuddyInfo.class || type == AddressBook.class;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof BuddyInfo buddy) {
+            publish(BuddyChange.Type.ADDED, buddy, event.getPersister(), event.getState());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof BuddyInfo buddy) {
+            publish(BuddyChange.Type.UPDATED, buddy, event.getPersister(), event.getState());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof BuddyInfo buddy) {
+            publish(BuddyChange.Type.REMOVED, buddy, event.getPersister(), event.getDeletedState());
+        } else if (event.getEntity() instanceof AddressBook) {
+            feed.publish(BuddyChange.bookDeleted((Long) event.getId()));
+        }
+    }
+
+    private void publish(BuddyChange.Type type, BuddyInfo buddy, EntityPersister persister, Object[] state) {
+        // the id of a lazy proxy is read without initializing it
+        if (state[persister.getPropertyIndex(BOOK_PROPERTY)] instanceof AddressBook book && book.getId() != null) {
+            feed.publish(BuddyChange.of(type, book.getId(), buddy));
+        }
+    }
+
+    // a failed commit publishes nothing
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {}
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {}
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {}
+}
@@ -0,0 +1,50 @@
+package lab1;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/addressbooks")
+public class BuddyExportController {
+    private final AddressBookRepository abRepo;
+    private final BuddyExportService exportService;
+
+    public BuddyExportController(AddressBookRepository abRepo, BuddyExportService exportService) {
+        this.abRepo = abRepo;
+        this.exportService = exportService;
+    }
+
+    // Streaming export: GET /addressbooks/1/export?format=ndjson|csv (default ndjson)
+    // Rows are written as they are read; gzip-compressed when the client sends Accept-Encoding: gzip.
+    @GetMapping("/{id}/export")
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable Long id,
+                                                       @RequestParam(defaultValue = "ndjson") ExportFormat format,
+                                                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // check up front so a missing book is a 404, not an empty 200
+        if (!abRepo.existsById(id)) throw new NoSuchElementException("address book " + id);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, format.contentType() + ";charset=UTF-8")
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"addressbook-" + id + "." + format.extension() + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        return response.body(out -> {
+            if (gzip) {
+                GZIPOutputStream zipped = new GZIPOutputStream(out, 8192);
+                exportService.export(id, format, zipped);
+                zipped.finish();
+            } else {
+                exportService.export(id, format, out);
+            }
+        });
+    }
+}
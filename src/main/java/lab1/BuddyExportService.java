@@ -0,0 +1,106 @@
+package lab1;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Writes a book's buddies to an output stream as NDJSON or CSV. Rows come from a
+ * forward-only cursor in a read-only transaction and are detached as soon as they are
+ * written, so memory use does not depend on how many buddies the book has.
+ */
+@Service
+public class BuddyExportService {
+    private final BuddyInfoRepository buddyRepo;
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTx;
+    private final ObjectMapper objectMapper;
+
+    public BuddyExportService(BuddyInfoRepository buddyRepo,
+                              EntityManager em,
+                              PlatformTransactionManager txManager,
+                              ObjectMapper objectMapper) {
+        this.buddyRepo = buddyRepo;
+        this.em = em;
+        this.objectMapper = objectMapper;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /** Streams every buddy of the book to {@code out}; does not close it. Returns the row count. */
+    public long export(Long bookId, ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try {
+            Long count = readOnlyTx.execute(status -> {
+                try (Stream<BuddyInfo> rows = buddyRepo.streamByAddressBookId(bookId)) {
+                    return format == ExportFormat.CSV ? writeCsv(rows, writer) : writeNdjson(rows, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            return count == null ? 0 : count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long writeNdjson(Stream<BuddyInfo> rows, Writer writer) throws IOException {
+        long n = 0;
+        JsonGenerator json = objectMapper.getFactory().createGenerator(writer);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null); // lines are separated by the '\n' written below
+        for (BuddyInfo b : (Iterable<BuddyInfo>) rows::iterator) {
+            json.writeStartObject();
+            json.writeNumberField("id", b.getId());
+            json.writeStringField("name", b.getName());
+            json.writeStringField("phone", b.getPhone());
+            json.writeStringField("address", b.getAddress());
+            json.writeEndObject();
+            json.writeRaw('\n');
+            em.detach(b);
+            n++;
+        }
+        json.flush();
+        return n;
+    }
+
+    private long writeCsv(Stream<BuddyInfo> rows, Writer writer) throws IOException {
+        long n = 0;
+        writer.write("id,name,phone,address\r\n");
+        for (BuddyInfo b : (Iterable<BuddyInfo>) rows::iterator) {
+            writer.write(String.valueOf(b.getId()));
+            writer.write(',');
+            writer.write(csv(b.getName()));
+            writer.write(',');
+            writer.write(csv(b.getPhone()));
+            writer.write(',');
+            writer.write(csv(b.getAddress()));
+            writer.write("\r\n");
+            em.detach(b);
+            n++;
+        }
+        return n;
+    }
+
+    /** RFC 4180 field: quoted only when it contains a comma, quote or line break. */
+    static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,25 @@
+package lab1;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/addressbooks")
+public class BuddyImportController {
+    static final String NDJSON = "application/x-ndjson";
+
+    private final BuddyImportService importService;
+
+    public BuddyImportController(BuddyImportService importService) {
+        this.importService = importService;
+    }
+
+    // Streaming import, one buddy per line: {"name":"John","phone":"123","address":"Ottawa"}
+    // Responds with a summary only, never the book itself.
+    @PostMapping(value = "/{id}/buddies/import", consumes = NDJSON)
+    public BuddyImportSummary importBuddies(@PathVariable Long id, InputStream body) throws IOException {
+        return importService.importNdjson(id, body);
+    }
+}
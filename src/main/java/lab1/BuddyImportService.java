@@ -0,0 +1,195 @@
+package lab1;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Streams newline-delimited JSON buddies into an address book.
+ * Input is read one line at a time and written in fixed-size chunks, each in its own
+ * transaction with the persistence context cleared afterwards, so memory stays flat
+ * regardless of input size. The book's buddies collection is never loaded; its version
+ * is bumped once per chunk. A chunk the database refuses is written again one line at a
+ * time, so only the lines it cannot store are rejected.
+ */
+@Service
+public class BuddyImportService {
+    private static final Logger log = LoggerFactory.getLogger(BuddyImportService.class);
+
+    private final AddressBookRepository abRepo;
+    private final BuddyInfoRepository buddyRepo;
+    private final AddressBookCache cache;
+    private final BuddySearchIndex searchIndex;
+    private final EntityManager em;
+    private final TransactionTemplate tx;
+    private final ConflictRetryPolicy retry;
+    private final JsonFactory jsonFactory;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    public BuddyImportService(AddressBookRepository abRepo,
+                              BuddyInfoRepository buddyRepo,
+                              AddressBookCache cache,
+                              BuddySearchIndex searchIndex,
+                              EntityManager em,
+                              TransactionTemplate tx,
+                              ConflictRetryPolicy retry,
+                              ObjectMapper objectMapper,
+                              @Value("${addressbook.import.chunk-size:1000}") int chunkSize,
+                              @Value("${addressbook.import.max-reported-errors:100}") int maxReportedErrors) {
+        this.abRepo = abRepo;
+        this.buddyRepo = buddyRepo;
+        this.cache = cache;
+        this.searchIndex = searchIndex;
+        this.em = em;
+        this.tx = tx;
+        this.retry = retry;
+        this.jsonFactory = objectMapper.getFactory();
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public BuddyImportSummary importNdjson(Long bookId, InputStream in) throws IOException {
+        if (!abRepo.existsById(bookId)) throw new NoSuchElementException("address book " + bookId);
+
+        Progress progress = new Progress();
+        List<Pending> chunk = new ArrayList<>(chunkSize);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        long lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            try {
+                chunk.add(new Pending(lineNo, parse(line)));
+            } catch (JsonProcessingException e) {
+                progress.reject(lineNo, "malformed JSON: " + e.getOriginalMessage());
+            } catch (IllegalArgumentException e) {
+                progress.reject(lineNo, e.getMessage());
+            }
+            if (chunk.size() == chunkSize) {
+                writeChunk(bookId, chunk, progress);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) writeChunk(bookId, chunk, progress);
+        return progress.summary();
+    }
+
+    /** Reads one JSON object into a BuddyInfo; the constructors run the usual validation. */
+    private BuddyInfo parse(String line) throws IOException {
+        String name = null, phone = null, address = null;
+        try (JsonParser p = jsonFactory.createParser(line)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("expected a JSON object");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "name" -> name = text(p, value);
+                    case "phone" -> phone = text(p, value);
+                    case "address" -> address = text(p, value);
+                    default -> p.skipChildren();
+                }
+            }
+            if (p.nextToken() != null) throw new IllegalArgumentException("trailing content after object");
+        }
+        return address == null ? new BuddyInfo(name, phone) : new BuddyInfo(name, phone, address);
+    }
+
+    private static String text(JsonParser p, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) return null;
+        if (!value.isScalarValue()) throw new IllegalArgumentException(p.currentName() + " must be a string");
+        return p.getValueAsString();
+    }
+
+    private void writeChunk(Long bookId, List<Pending> chunk, Progress progress) {
+        List<Pending> duplicates = new ArrayList<>();
+        try {
+            // the book row is locked before the lookup, so concurrent writers to it queue instead of
+            // conflicting; a conflict that still happens (e.g. a lock timeout) re-runs the chunk
+            retry.execute(() -> tx.execute(status -> {
+                duplicates.clear();
+                AddressBook book = em.find(AddressBook.class, bookId, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+                if (book == null) throw new NoSuchElementException("address book " + bookId + " was deleted");
+                // one indexed lookup per chunk for buddies the book already has
+                Set<String> seen = new HashSet<>(existingKeys(bookId, chunk));
+                for (Pending p : chunk) {
+                    if (!seen.add(p.buddy().getDedupKey())) {
+                        duplicates.add(p);
+                        continue;
+                    }
+                    BuddyInfo buddy = p.buddy().copy();
+                    buddy.setAddressBook(book);
+                    em.persist(buddy);
+                    searchIndex.putAfterCommit(bookId, buddy);
+                }
+                em.flush();
+                em.clear();
+                cache.evictBook(bookId);
+                return null;
+            }));
+        } catch (NoSuchElementException e) {
+            for (Pending p : chunk) progress.reject(p.line(), e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            if (chunk.size() == 1) {
+                // the database's own message names tables and constraints; it stays in the log
+                log.info("Import line {} for book {} not stored: {}", chunk.get(0).line(), bookId, e.toString());
+                progress.reject(chunk.get(0).line(), "could not be stored (a field may be too long)");
+                return;
+            }
+            // one bad line should not reject the rest: write them one by one, so only it fails
+            for (Pending p : chunk) writeChunk(bookId, List.of(p), progress);
+            return;
+        }
+        progress.accepted += chunk.size() - duplicates.size();
+        for (Pending p : duplicates) progress.reject(p.line(), "duplicate buddy");
+    }
+
+    private List<String> existingKeys(Long bookId, List<Pending> chunk) {
+        List<String> keys = new ArrayList<>(chunk.size());
+        for (Pending p : chunk) keys.add(p.buddy().getDedupKey());
+        return buddyRepo.findExistingDedupKeys(bookId, keys);
+    }
+
+    private record Pending(long line, BuddyInfo buddy) {}
+
+    private final class Progress {
+        long accepted;
+        long rejected;
+        final List<BuddyImportSummary.LineError> errors = new ArrayList<>();
+
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new BuddyImportSummary.LineError(line, message));
+            }
+        }
+
+        BuddyImportSummary summary() {
+            return new BuddyImportSummary(accepted, rejected, List.copyOf(errors), errors.size() < rejected);
+        }
+    }
+}
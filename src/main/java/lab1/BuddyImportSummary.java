@@ -0,0 +1,17 @@
+package lab1;
+
+import java.util.List;
+
+/**
+ * Result of an NDJSON import: counts plus the first few per-line errors.
+ * Only the first {@code addressbook.import.max-reported-errors} errors are kept
+ * so the summary stays small however bad the input is.
+ */
+public record BuddyImportSummary(long accepted,
+                                 long rejected,
+                                 List<LineError> errors,
+                                 boolean errorsTruncated) {
+
+    /** A rejected input line (1-based) and why it was rejected. */
+    public record LineError(long line, String message) {}
+}
@@ -1,15 +1,39 @@
 package lab1;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 @Entity
-@Table(name = "buddy_info")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "buddy_info",
+        indexes = {
+                // backs keyset paging of a book's buddies: WHERE address_book_id = ? AND id > ? ORDER BY id,
+                // and doubles as the address_book_id foreign-key index
+                @Index(name = "idx_buddy_info_book_id", columnList = "address_book_id, id"),
+                // findByNameAndAddress; findByName uses its leading column
+                @Index(name = "idx_buddy_info_name_address", columnList = "name, address"),
+                // delta sync: WHERE address_book_id = ? AND change_seq > ?
+                @Index(name = "idx_buddy_info_book_change", columnList = "address_book_id, change_seq")
+        },
+        uniqueConstraints = {
+                // one buddy per business key within a book (see dedupKey)
+                @UniqueConstraint(name = "uk_buddy_info_book_dedup", columnNames = {"address_book_id", "dedup_key"})
+        })
 public class BuddyInfo {
+    private static final Pattern NON_DIGITS = Pattern.compile("\\D");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final char KEY_SEPARATOR = '\u001f';
 
+    /** Pooled sequence so bulk inserts can be JDBC-batched (see AddressBook.id). */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "buddy_info_seq")
+    @SequenceGenerator(name = "buddy_info_seq", sequenceName = "buddy_info_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -21,6 +45,11 @@ public class BuddyInfo {
     @Column(nullable = false)
     private String address; // NEW
 
+    /** Normalized name + phone + address; kept in step by the setters. */
+    @JsonIgnore
+    @Column(name = "dedup_key", length = 1024)
+    private String dedupKey;
+
     /**
      * Many buddies belong to one address book.
      * LAZY fetch to avoid loading the parent unless needed.
@@ -30,6 +59,11 @@ public class BuddyInfo {
     @JsonBackReference
     private AddressBook addressBook;
 
+    /** The book's change_seq as of this buddy's last insert or update; set by ChangeSequenceListener. */
+    @JsonIgnore
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
     /** JPA requires a no-arg constructor; protected is safer. */
     protected BuddyInfo() {}
 
@@ -47,6 +81,16 @@ public class BuddyInfo {
         setAddress(address);
     }
 
+    /** Unsaved copy of the contact fields, so a rolled-back insert can be re-run on a clean instance. */
+    public BuddyInfo copy() {
+        BuddyInfo c = new BuddyInfo();
+        c.name = name;
+        c.phone = phone;
+        c.address = address;
+        c.dedupKey = dedupKey;
+        return c;
+    }
+
     public Long getId() { return id; }
 
     public String getName() { return name; }
@@ -55,6 +99,7 @@ public class BuddyInfo {
             throw new IllegalArgumentException("name cannot be null/blank");
         }
         this.name = name;
+        this.dedupKey = dedupKey(this.name, this.phone, this.address);
     }
 
     public String getPhone() { return phone; }
@@ -63,6 +108,7 @@ public class BuddyInfo {
             throw new IllegalArgumentException("phone cannot be null/blank");
         }
         this.phone = phone;
+        this.dedupKey = dedupKey(this.name, this.phone, this.address);
     }
 
     public String getAddress() { return address; }
@@ -71,11 +117,33 @@ public class BuddyInfo {
             throw new IllegalArgumentException("address cannot be null/blank");
         }
         this.address = address;
+        this.dedupKey = dedupKey(this.name, this.phone, this.address);
+    }
+
+    public String getDedupKey() { return dedupKey; }
+
+    /**
+     * Business key used to spot duplicate buddies: case- and whitespace-insensitive
+     * name and address, and the phone reduced to its digits ("(613) 555-0100" and
+     * "613.555.0100" match). A phone with no digits is compared as text.
+     */
+    public static String dedupKey(String name, String phone, String address) {
+        String digits = phone == null ? "" : NON_DIGITS.matcher(phone).replaceAll("");
+        return normalize(name) + KEY_SEPARATOR
+                + (digits.isEmpty() ? normalize(phone) : digits) + KEY_SEPARATOR
+                + normalize(address);
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : WHITESPACE.matcher(s.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
     }
 
     public AddressBook getAddressBook() { return addressBook; }
     public void setAddressBook(AddressBook ab) { this.addressBook = ab; }
 
+    public Long getChangeSeq() { return changeSeq; }
+    void setChangeSeq(Long changeSeq) { this.changeSeq = changeSeq; }
+
     @Override
     public String toString() {
         return "BuddyInfo{id=" + id +
@@ -1,9 +1,110 @@
 package lab1;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Declared finders are read-only transactions (a read replica, when enabled) unless they join
+// a caller's read-write transaction. The find*View* finders select just the BuddyView columns.
 public interface BuddyInfoRepository extends CrudRepository<BuddyInfo, Long> {
+    @Transactional(readOnly = true)
     Iterable<BuddyInfo> findByName(String name);
+    @Transactional(readOnly = true)
     Iterable<BuddyInfo> findByNameAndAddress(String name, String address); // add this
 
+    /** Keyset page: the next {@code limit} buddies of a book after {@code afterId}, by id. */
+    @Transactional(readOnly = true)
+    List<BuddyInfo> findByAddressBookIdAndIdGreaterThanOrderByIdAsc(Long addressBookId, Long afterId, Limit limit);
+
+    /** The same keyset page as columns only, for the REST endpoint. */
+    @Transactional(readOnly = true)
+    List<BuddyView> findViewsByAddressBookIdAndIdGreaterThanOrderByIdAsc(Long addressBookId, Long afterId, Limit limit);
+
+    @Transactional(readOnly = true)
+    long countByAddressBookId(Long addressBookId);
+
+    /** Offset page of a book's buddies, for the HTML view's numbered pages. */
+    @Transactional(readOnly = true)
+    List<BuddyInfo> findByAddressBookId(Long addressBookId, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    Optional<BuddyInfo> findByIdAndAddressBookId(Long id, Long addressBookId);
+
+    @Transactional(readOnly = true)
+    Optional<BuddyView> findViewByIdAndAddressBookId(Long id, Long addressBookId);
+
+    /** Delta sync: buddies of a book inserted or updated after sync position {@code since}. */
+    @Transactional(readOnly = true)
+    List<BuddyView> findViewsByAddressBookIdAndChangeSeqGreaterThanOrderByChangeSeqAscIdAsc(Long addressBookId, Long since);
+
+    /** Full sync: every buddy of a book, by id. */
+    @Transactional(readOnly = true)
+    List<BuddyView> findViewsByAddressBookIdOrderByIdAsc(Long addressBookId);
+
+    /** Duplicate lookup through the (address_book_id, dedup_key) unique index. */
+    @Transactional(readOnly = true)
+    Optional<BuddyInfo> findByAddressBookIdAndDedupKey(Long addressBookId, String dedupKey);
+
+    /** Which of the given business keys a book already holds. */
+    @Transactional(readOnly = true)
+    @Query("select b.dedupKey from BuddyInfo b where b.addressBook.id = :addressBookId and b.dedupKey in :dedupKeys")
+    List<String> findExistingDedupKeys(Long addressBookId, Collection<String> dedupKeys);
+
+    /** Which of {@code ids} are buddies of the book. */
+    @Transactional(readOnly = true)
+    @Query("select b.id from BuddyInfo b where b.addressBook.id = :addressBookId and b.id in :ids")
+    List<Long> findIdsByAddressBookIdAndIdIn(Long addressBookId, Collection<Long> ids);
+
+    @Transactional(readOnly = true)
+    List<BuddyView> findViewsByAddressBookIdAndIdIn(Long addressBookId, Collection<Long> ids);
+
+    /** Which of {@code ids}, buddies of book {@code fromId}, have a business key book {@code toId} already holds. */
+    @Transactional(readOnly = true)
+    @Query("select b.id from BuddyInfo b where b.addressBook.id = :fromId and b.id in :ids"
+            + " and b.dedupKey in (select t.dedupKey from BuddyInfo t where t.addressBook.id = :toId)")
+    List<Long> findIdsDuplicatedInBook(Long fromId, Long toId, Collection<Long> ids);
+
+    // Set-based statements on buddy_info by address_book_id. They load no entities and bypass
+    // entity events, so callers (BuddyBulkService) keep versions, delta sync, the change feed,
+    // the search index and the books' cached buddies collections in step; Hibernate itself
+    // only evicts the BuddyInfo cache region around them.
+
+    @Modifying
+    @Query("delete from BuddyInfo b where b.addressBook.id = :addressBookId and b.id in :ids")
+    int deleteByAddressBookIdAndIdIn(Long addressBookId, Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from BuddyInfo b where b.addressBook.id = :addressBookId")
+    int deleteAllByAddressBookId(Long addressBookId);
+
+    /** Re-parents buddies of book {@code fromId} to {@code to}, stamping them with its change_seq. */
+    @Modifying
+    @Query("update BuddyInfo b set b.addressBook = :to, b.changeSeq = :changeSeq where b.addressBook.id = :fromId and b.id in :ids")
+    int moveToBook(Long fromId, AddressBook to, Long changeSeq, Collection<Long> ids);
+
+    /**
+     * Forward-only cursor over a book's buddies in id order, for exports. Rows are read-only,
+     * fetched {@value #EXPORT_FETCH_SIZE} at a time and bypass the second-level cache; the
+     * caller must consume the stream inside a transaction and close it.
+     */
+    @Query("select b from BuddyInfo b where b.addressBook.id = :addressBookId order by b.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    Stream<BuddyInfo> streamByAddressBookId(Long addressBookId);
+
+    int EXPORT_FETCH_SIZE = 500;
 }
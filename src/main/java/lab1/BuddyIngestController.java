@@ -0,0 +1,45 @@
+package lab1;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/addressbooks")
+public class BuddyIngestController {
+    static final String RESPOND_ASYNC = "respond-async";
+
+    private final BuddyIngestQueue ingestQueue;
+
+    public BuddyIngestController(BuddyIngestQueue ingestQueue) {
+        this.ingestQueue = ingestQueue;
+    }
+
+    // Opt-in write-behind add: same body as POST /{id}/buddies plus "Prefer: respond-async".
+    // Responds 202 with a ticket and its Location straight away; the buddy is written in a
+    // later batch. 429 with Retry-After when the queue is full. ?onDuplicate=skip (default) ends
+    // a duplicate's ticket DUPLICATE, reject ends it FAILED; upsert is 400, use the synchronous add.
+    @PostMapping(value = "/{id}/buddies", headers = "Prefer=" + RESPOND_ASYNC)
+    public ResponseEntity<IngestTicket> addBuddyAsync(@PathVariable Long id, @RequestBody BuddyInfo buddy,
+                                                      @RequestParam(defaultValue = "skip") DuplicatePolicy onDuplicate) {
+        if (onDuplicate == DuplicatePolicy.UPSERT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "onDuplicate must be reject or skip with " + RESPOND_ASYNC);
+        }
+        IngestTicket ticket = ingestQueue.accept(id, buddy, onDuplicate);
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/addressbooks/{id}/ingest/{ticket}").buildAndExpand(id, ticket.id()).toUri();
+        return ResponseEntity.accepted().location(location)
+                .header("Preference-Applied", RESPOND_ASYNC)
+                .body(ticket);
+    }
+
+    // Ticket status: QUEUED, then WRITTEN (with buddyId), DUPLICATE or FAILED
+    @GetMapping("/{id}/ingest/{ticketId}")
+    public IngestTicket ticket(@PathVariable Long id, @PathVariable String ticketId) {
+        return ingestQueue.ticket(ticketId).filter(t -> t.addressBookId().equals(id)).orElseThrow();
+    }
+}
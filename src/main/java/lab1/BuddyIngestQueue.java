@@ -0,0 +1,274 @@
+package lab1;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind buffer for single-buddy adds. Accepted buddies wait on a bounded queue; one
+ * background writer takes up to {@code batch-size} at a time, groups them by book and writes
+ * each group in one transaction (one dedup lookup, one version bump), the same way the NDJSON
+ * import writes a chunk. A full queue is refused rather than grown, so callers see backpressure.
+ * A group that fails for any reason but a missing book is written again one buddy at a time, so
+ * only the buddies that cannot be written fail their tickets; nothing stops the writer but stop().
+ * <p>
+ * Stops after the web server, so no new buddies arrive while it drains what is queued.
+ */
+@Service
+public class BuddyIngestQueue implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(BuddyIngestQueue.class);
+
+    private final BuddyInfoRepository buddyRepo;
+    private final AddressBookCache cache;
+    private final BuddySearchIndex searchIndex;
+    private final EntityManager em;
+    private final TransactionTemplate tx;
+    private final ConflictRetryPolicy retry;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final int ticketRetention;
+
+    // tickets of queued buddies, plus the latest ticketRetention finished ones
+    private final Map<String, IngestTicket> tickets = new ConcurrentHashMap<>();
+    private final ArrayDeque<String> finished = new ArrayDeque<>(); // writer thread only
+    // offers hold the read lock so none can slip in after stop() closes the queue
+    private final ReadWriteLock gate = new ReentrantReadWriteLock();
+    private volatile boolean running;
+    private Thread writer;
+
+    public BuddyIngestQueue(BuddyInfoRepository buddyRepo,
+                            AddressBookCache cache,
+                            BuddySearchIndex searchIndex,
+                            EntityManager em,
+                            TransactionTemplate tx,
+                            ConflictRetryPolicy retry,
+                            MeterRegistry registry,
+                            @Value("${addressbook.ingest.capacity:10000}") int capacity,
+                            @Value("${addressbook.ingest.batch-size:500}") int batchSize,
+                            @Value("${addressbook.ingest.flush-interval:50ms}") Duration flushInterval,
+                            @Value("${addressbook.ingest.ticket-retention:100000}") int ticketRetention) {
+        this.buddyRepo = buddyRepo;
+        this.cache = cache;
+        this.searchIndex = searchIndex;
+        this.em = em;
+        this.tx = tx;
+        this.retry = retry;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushInterval.toMillis();
+        this.ticketRetention = ticketRetention;
+        Gauge.builder("addressbook.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Buddies accepted but not yet written")
+                .register(registry);
+    }
+
+    /**
+     * Queues a buddy for {@code bookId} and returns its QUEUED ticket. The book is only checked
+     * when the batch is written; an unknown book fails the ticket, and so does a duplicate under
+     * {@link DuplicatePolicy#REJECT} (one under SKIP ends DUPLICATE). UPSERT is not supported.
+     *
+     * @throws IngestQueueFullException if the queue is full or shutting down
+     */
+    public IngestTicket accept(Long bookId, BuddyInfo buddy, DuplicatePolicy onDuplicate) {
+        if (onDuplicate == DuplicatePolicy.UPSERT) throw new IllegalArgumentException("onDuplicate=upsert is not supported for queued adds");
+        IngestTicket ticket = IngestTicket.queued(UUID.randomUUID().toString(), bookId);
+        gate.readLock().lock();
+        try {
+            if (!running) throw new IngestQueueFullException("ingest queue is shutting down");
+            tickets.put(ticket.id(), ticket);
+            if (!queue.offer(new Pending(ticket, buddy.copy(), onDuplicate))) {
+                tickets.remove(ticket.id());
+                throw new IngestQueueFullException("ingest queue is full, retry later");
+            }
+        } finally {
+            gate.readLock().unlock();
+        }
+        return ticket;
+    }
+
+    public Optional<IngestTicket> ticket(String id) {
+        return Optional.ofNullable(tickets.get(id));
+    }
+
+    /** Buddies accepted but not yet written. */
+    public int depth() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        gate.writeLock().lock();
+        try {
+            if (running) return;
+            running = true;
+            writer = new Thread(this::drain, "buddy-ingest");
+            writer.start();
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+    /** Refuses new buddies, then waits for the writer to flush everything already queued. */
+    @Override
+    public void stop() {
+        Thread w;
+        gate.writeLock().lock();
+        try {
+            if (!running) return;
+            running = false;
+            w = writer;
+        } finally {
+            gate.writeLock().unlock();
+        }
+        try {
+            w.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Below the web server's phases: starts before it takes requests, stops after it stopped.
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (true) {
+            Pending first;
+            try {
+                first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue; // only stop() ends the loop, once the queue is empty
+            }
+            if (first == null) {
+                if (!running) return;
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            Map<Long, List<Pending>> byBook = new LinkedHashMap<>();
+            for (Pending p : batch) {
+                byBook.computeIfAbsent(p.ticket().addressBookId(), k -> new ArrayList<>()).add(p);
+            }
+            byBook.forEach((bookId, group) -> {
+                try {
+                    write(bookId, group);
+                } catch (Throwable e) {
+                    // anything writeGroup did not handle (an Error) fails the group, not the writer
+                    log.error("Write-behind writer failed on {} buddies for book {}; failing them and draining on",
+                            group.size(), bookId, e);
+                    for (Pending p : group) {
+                        if (tickets.get(p.ticket().id()).state() == IngestTicket.State.QUEUED) finish(p.ticket().failed(e.toString()));
+                    }
+                }
+            });
+            batch.clear();
+        }
+    }
+
+    // on the book's shard, pinned against a concurrent shard move, when sharding is enabled
+    @SuppressWarnings("try") // the pin is held for the try block, never referenced in it
+    private void write(Long bookId, List<Pending> group) {
+        try (ShardContext.Pin pin = ShardContext.pin(bookId)) {
+            ShardContext.forBook(bookId, () -> {
+                writeGroup(bookId, group);
+                return null;
+            });
+        }
+    }
+
+    private void writeGroup(Long bookId, List<Pending> group) {
+        IngestTicket[] done = new IngestTicket[group.size()];
+        try {
+            // the book row is locked before the lookup, so concurrent writers to it queue instead of
+            // conflicting; a conflict that still happens (e.g. a lock timeout) re-runs the group
+            retry.execute(() -> tx.execute(status -> {
+                AddressBook book = em.find(AddressBook.class, bookId, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+                if (book == null) throw new NoSuchElementException("address book " + bookId + " not found");
+                List<String> keys = new ArrayList<>(group.size());
+                for (Pending p : group) keys.add(p.buddy().getDedupKey());
+                Set<String> seen = new HashSet<>(buddyRepo.findExistingDedupKeys(bookId, keys));
+                List<BuddyInfo> saved = new ArrayList<>(group.size());
+                for (int i = 0; i < done.length; i++) {
+                    Pending p = group.get(i);
+                    if (!seen.add(p.buddy().getDedupKey())) {
+                        done[i] = p.onDuplicate() == DuplicatePolicy.REJECT
+                                ? p.ticket().failed(new DuplicateBuddyException(p.buddy()).getMessage())
+                                : p.ticket().duplicate();
+                        continue;
+                    }
+                    BuddyInfo buddy = p.buddy().copy();
+                    buddy.setAddressBook(book);
+                    em.persist(buddy);
+                    searchIndex.putAfterCommit(bookId, buddy);
+                    saved.add(buddy);
+                    done[i] = null;
+                }
+                em.flush();
+                // ids are assigned by now; written tickets are filled in from them
+                for (int i = 0, s = 0; i < done.length; i++) {
+                    if (done[i] == null) done[i] = group.get(i).ticket().written(saved.get(s++).getId());
+                }
+                em.clear();
+                cache.evictBook(bookId);
+                return null;
+            }));
+        } catch (NoSuchElementException e) {
+            for (Pending p : group) finish(p.ticket().failed(e.getMessage()));
+            return;
+        } catch (RuntimeException e) {
+            if (group.size() == 1) {
+                log.warn("Write-behind buddy for book {} failed: {}", bookId, e.toString());
+                finish(group.get(0).ticket().failed(e.getMessage()));
+                return;
+            }
+            // one bad buddy should not fail the rest: write them one by one, so only it fails
+            log.warn("Write-behind batch of {} buddies for book {} failed, writing them one at a time: {}",
+                    group.size(), bookId, e.toString());
+            for (Pending p : group) writeGroup(bookId, List.of(p));
+            return;
+        }
+        for (IngestTicket t : done) finish(t);
+    }
+
+    private void finish(IngestTicket ticket) {
+        tickets.put(ticket.id(), ticket);
+        finished.add(ticket.id());
+        while (finished.size() > ticketRetention) tickets.remove(finished.poll());
+    }
+
+    private record Pending(IngestTicket ticket, BuddyInfo buddy, DuplicatePolicy onDuplicate) {}
+}
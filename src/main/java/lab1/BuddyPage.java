@@ -0,0 +1,9 @@
+package lab1;
+
+import java.util.List;
+
+/**
+ * One keyset page of a book's buddies. {@code next} is the cursor to pass back as
+ * {@code after} for the following page, or null when this is the last page.
+ */
+public record BuddyPage(List<BuddyView> buddies, Long next) {}
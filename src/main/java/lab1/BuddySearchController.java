@@ -0,0 +1,33 @@
+package lab1;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/addressbooks")
+public class BuddySearchController {
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 200;
+
+    private final AddressBookRepository abRepo;
+    private final BuddySearchIndex searchIndex;
+
+    public BuddySearchController(AddressBookRepository abRepo, BuddySearchIndex searchIndex) {
+        this.abRepo = abRepo;
+        this.searchIndex = searchIndex;
+    }
+
+    // Type-ahead: GET /addressbooks/1/buddies/search?q=jo%20ott -> buddies with a name/address
+    // word starting with "jo" and one starting with "ott"; digits also match phone prefixes.
+    // Served from the in-memory index; the database is only asked whether the book exists on a miss.
+    @GetMapping("/{id}/buddies/search")
+    public List<BuddySearchHit> search(@PathVariable Long id,
+                                       @RequestParam String q,
+                                       @RequestParam(defaultValue = "" + DEFAULT_LIMIT) int limit) {
+        List<BuddySearchHit> hits = searchIndex.search(id, q, Math.max(1, Math.min(limit, MAX_LIMIT)));
+        if (hits.isEmpty() && !abRepo.existsById(id)) throw new NoSuchElementException("address book " + id);
+        return hits;
+    }
+}
@@ -0,0 +1,4 @@
+package lab1;
+
+/** A buddy as held by the search index; what GET /addressbooks/{id}/buddies/search returns. */
+public record BuddySearchHit(Long id, String name, String phone, String address) {}
@@ -0,0 +1,316 @@
+package lab1;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-process type-ahead index over buddies, one per address book. Names and addresses are
+ * split into case- and accent-folded tokens; phones are reduced to their digits. Both live in
+ * sorted maps, so a prefix is a range scan that stops as soon as {@code limit} hits are found
+ * (the phone map is the digit prefix trie, stored flat). Postings are sorted id arrays.
+ * Built from buddy_info at startup and updated after each committed add or remove.
+ */
+@Component
+public class BuddySearchIndex {
+    private static final Pattern NON_TOKEN = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_DIGITS = Pattern.compile("\\D");
+
+    private final JdbcTemplate jdbc;
+    private final Map<Long, BookIndex> books = new ConcurrentHashMap<>();
+
+    private final int shards;
+
+    public BuddySearchIndex(DataSource dataSource) {
+        this(dataSource, 1);
+    }
+
+    @Autowired
+    public BuddySearchIndex(DataSource dataSource, ObjectProvider<ShardDirectory> shards) {
+        this(dataSource, ShardDirectory.shardCount(shards));
+    }
+
+    private BuddySearchIndex(DataSource dataSource, int shards) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(BuddyInfoRepository.EXPORT_FETCH_SIZE);
+        this.shards = shards;
+    }
+
+    /** Loads every buddy row once the schema is up; one streaming pass per shard, no entities. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        books.clear();
+        for (int s = 0; s < shards; s++) {
+            ShardContext.onShard(s, () -> {
+                jdbc.query("select id, address_book_id, name, phone, address from buddy_info where address_book_id is not null",
+                        (RowCallbackHandler) rs -> put(rs.getLong(2), new BuddySearchHit(rs.getLong(1), rs.getString(3), rs.getString(4), rs.getString(5))));
+                return null;
+            });
+        }
+    }
+
+    /** Up to {@code limit} buddies of the book matching every term of {@code q} as a prefix. */
+    public List<BuddySearchHit> search(Long bookId, String q, int limit) {
+        BookIndex book = books.get(bookId);
+        List<String> terms = queryTerms(q);
+        if (book == null || terms.isEmpty() || limit <= 0) return List.of();
+        return book.search(terms, limit);
+    }
+
+    /** Adds or replaces a buddy now. */
+    public void put(Long bookId, BuddySearchHit hit) {
+        books.computeIfAbsent(bookId, id -> new BookIndex()).put(hit);
+    }
+
+    public void remove(Long bookId, Long buddyId) {
+        BookIndex book = books.get(bookId);
+        if (book != null) book.remove(buddyId);
+    }
+
+    public void removeBook(Long bookId) {
+        books.remove(bookId);
+    }
+
+    /** Indexes the buddy's state as of commit (its id is assigned by then); now if no transaction. */
+    public void putAfterCommit(Long bookId, BuddyInfo buddy) {
+        afterCommit(() -> put(bookId, new BuddySearchHit(buddy.getId(), buddy.getName(), buddy.getPhone(), buddy.getAddress())));
+    }
+
+    public void removeAfterCommit(Long bookId, Long buddyId) {
+        afterCommit(() -> remove(bookId, buddyId));
+    }
+
+    public void removeBookAfterCommit(Long bookId) {
+        afterCommit(() -> removeBook(bookId));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() { action.run(); }
+        });
+    }
+
+    /** Case- and accent-folded word tokens. */
+    static List<String> tokens(String text) {
+        if (text == null || text.isBlank()) return List.of();
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> out = new ArrayList<>();
+        for (String t : NON_TOKEN.split(folded)) {
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out;
+    }
+
+    /**
+     * Query tokens, with runs of numeric tokens joined: "(613) 555" is typed as a phone number,
+     * so it becomes the one digit prefix "613555" rather than two terms that each must match.
+     */
+    static List<String> queryTerms(String q) {
+        List<String> out = new ArrayList<>();
+        for (String t : tokens(q)) {
+            int last = out.size() - 1;
+            if (last >= 0 && isNumeric(t) && isNumeric(out.get(last))) out.set(last, out.get(last) + t);
+            else out.add(t);
+        }
+        return out;
+    }
+
+    static String digits(String phone) {
+        return phone == null ? "" : NON_DIGITS.matcher(phone).replaceAll("");
+    }
+
+    private static final class BookIndex {
+        /** Stop sizing a term's range past this many postings; it is unselective either way. */
+        private static final int SELECTIVITY_CAP = 10_000;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, Entry> entries = new HashMap<>();
+        private final TreeMap<String, Postings> words = new TreeMap<>();
+        private final TreeMap<String, Postings> phones = new TreeMap<>();
+
+        void put(BuddySearchHit hit) {
+            lock.writeLock().lock();
+            try {
+                Entry old = entries.remove(hit.id());
+                if (old != null) unindex(old);
+                List<String> terms = terms(hit);
+                String[] canonical = new String[terms.size()];
+                for (int i = 0; i < canonical.length; i++) {
+                    Postings p = words.computeIfAbsent(terms.get(i), Postings::new);
+                    p.add(hit.id());
+                    canonical[i] = p.key; // share the key string instead of holding a copy per buddy
+                }
+                String d = digits(hit.phone());
+                if (!d.isEmpty()) {
+                    Postings p = phones.computeIfAbsent(d, Postings::new);
+                    p.add(hit.id());
+                    d = p.key;
+                }
+                entries.put(hit.id(), new Entry(hit, canonical, d));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Long id) {
+            lock.writeLock().lock();
+            try {
+                Entry old = entries.remove(id);
+                if (old != null) unindex(old);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void unindex(Entry entry) {
+            long id = entry.hit().id();
+            for (String t : entry.terms()) drop(words, t, id);
+            if (!entry.phone().isEmpty()) drop(phones, entry.phone(), id);
+        }
+
+        private static void drop(TreeMap<String, Postings> map, String key, long id) {
+            Postings p = map.get(key);
+            if (p != null && p.remove(id) && p.isEmpty()) map.remove(key);
+        }
+
+        List<BuddySearchHit> search(List<String> terms, int limit) {
+            lock.readLock().lock();
+            try {
+                // scan the most selective term's range, check the other terms per candidate
+                String driver = terms.get(0);
+                long best = Long.MAX_VALUE;
+                for (String t : terms) {
+                    long size = rangeSize(t, Math.min(best, SELECTIVITY_CAP));
+                    if (size < best || (size == best && t.length() > driver.length())) {
+                        driver = t;
+                        best = size;
+                    }
+                }
+                Set<Long> seen = new LinkedHashSet<>();
+                List<BuddySearchHit> out = new ArrayList<>(Math.min(limit, 64));
+                for (NavigableMap<String, Postings> range : ranges(driver)) {
+                    for (Postings postings : range.values()) {
+                        for (int i = 0; i < postings.size; i++) {
+                            long id = postings.ids[i];
+                            if (!seen.add(id)) continue;
+                            Entry entry = entries.get(id);
+                            if (terms.size() == 1 || entry.matchesAll(terms)) {
+                                out.add(entry.hit());
+                                if (out.size() == limit) return out;
+                            }
+                        }
+                    }
+                }
+                return out;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /** Postings under the term's ranges, counted only up to {@code cap}. */
+        private long rangeSize(String term, long cap) {
+            long n = 0;
+            for (NavigableMap<String, Postings> range : ranges(term)) {
+                for (Postings p : range.values()) {
+                    n += p.size;
+                    if (n >= cap) return cap;
+                }
+            }
+            return n;
+        }
+
+        /** Word tokens with the prefix, plus phones with its digits when the term is numeric. */
+        private List<NavigableMap<String, Postings>> ranges(String term) {
+            List<NavigableMap<String, Postings>> out = new ArrayList<>(2);
+            out.add(prefix(words, term));
+            if (isNumeric(term)) out.add(prefix(phones, term));
+            return out;
+        }
+
+        private static NavigableMap<String, Postings> prefix(TreeMap<String, Postings> map, String prefix) {
+            return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        }
+
+        private static List<String> terms(BuddySearchHit hit) {
+            List<String> out = new ArrayList<>(tokens(hit.name()));
+            for (String t : tokens(hit.address())) if (!out.contains(t)) out.add(t);
+            return out;
+        }
+    }
+
+    private static boolean isNumeric(String term) {
+        return !term.isEmpty() && digits(term).length() == term.length();
+    }
+
+    /** An indexed buddy with its folded terms and phone digits, kept for removal and matching. */
+    private record Entry(BuddySearchHit hit, String[] terms, String phone) {
+        boolean matchesAll(List<String> query) {
+            for (String q : query) {
+                boolean found = isNumeric(q) && phone.startsWith(q);
+                for (int i = 0; !found && i < terms.length; i++) found = terms[i].startsWith(q);
+                if (!found) return false;
+            }
+            return true;
+        }
+    }
+
+    /** Sorted, duplicate-free buddy ids; 8 bytes per id instead of a boxed set entry. */
+    private static final class Postings {
+        final String key;
+        long[] ids = new long[2];
+        int size;
+
+        Postings(String key) {
+            this.key = key;
+        }
+
+        void add(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) return;
+            at = -at - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) return false;
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        boolean isEmpty() { return size == 0; }
+    }
+}
@@ -0,0 +1,10 @@
+package lab1;
+
+import java.util.List;
+
+/**
+ * Answer to GET /addressbooks/{id}/sync?since=N. {@code buddies} are those added or changed
+ * after N and {@code removed} the ids deleted after N; with {@code full} set, {@code buddies} is
+ * the whole book and replaces the client's copy. Pass {@code seq} as {@code since} next time.
+ */
+public record BuddySync(long seq, boolean full, List<BuddyView> buddies, List<Long> removed) {}
@@ -0,0 +1,39 @@
+package lab1;
+
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/addressbooks")
+public class BuddySyncController {
+    private final AddressBookRepository abRepo;
+    private final BuddyInfoRepository buddyRepo;
+    private final BuddyTombstoneRepository tombstones;
+
+    public BuddySyncController(AddressBookRepository abRepo, BuddyInfoRepository buddyRepo,
+                               BuddyTombstoneRepository tombstones) {
+        this.abRepo = abRepo;
+        this.buddyRepo = buddyRepo;
+        this.tombstones = tombstones;
+    }
+
+    // Delta sync for mobile clients: GET /addressbooks/1/sync?since=42
+    // Only buddies changed and ids removed after that position, both through indexes on
+    // (address_book_id, change_seq), so the response follows churn rather than book size.
+    // No position, or one older than the compacted tombstones, gets the whole book (full=true).
+    // Apply "buddies" before "removed": a buddy changed and then deleted can be in both.
+    @GetMapping("/{id}/sync")
+    @Transactional(readOnly = true)
+    public BuddySync sync(@PathVariable Long id, @RequestParam(defaultValue = "0") long since) {
+        // read first: anything committed after it is sent again next time, never skipped
+        SyncPosition position = abRepo.findSyncPositionById(id).orElseThrow();
+        if (since <= 0 || since < position.floor() || since > position.seq()) {
+            return new BuddySync(position.seq(), true, buddyRepo.findViewsByAddressBookIdOrderByIdAsc(id), List.of());
+        }
+        return new BuddySync(position.seq(), false,
+                buddyRepo.findViewsByAddressBookIdAndChangeSeqGreaterThanOrderByChangeSeqAscIdAsc(id, since),
+                tombstones.findRemovedSince(id, since));
+    }
+}
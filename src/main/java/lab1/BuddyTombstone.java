@@ -0,0 +1,68 @@
+package lab1;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Marker left by a buddy that left a book, so delta sync can report the removal. Written by
+ * ChangeSequenceListener however the row was deleted (repository delete or orphan removal) and
+ * by BuddyBulkService for bulk deletes and moves, dropped with its book, and otherwise purged
+ * after a retention period by TombstoneCompactor. A moved buddy leaves one in each book it
+ * left, hence the (book, buddy) key.
+ */
+@Entity
+@IdClass(BuddyTombstone.Key.class)
+@Table(name = "buddy_tombstone", indexes = {
+        @Index(name = "idx_buddy_tombstone_book_change", columnList = "address_book_id, change_seq")
+})
+public class BuddyTombstone {
+    @Id
+    @Column(name = "address_book_id")
+    private Long addressBookId;
+
+    @Id
+    @Column(name = "buddy_id")
+    private Long buddyId;
+
+    @Column(name = "change_seq", nullable = false)
+    private Long changeSeq;
+
+    @Column(name = "deleted_millis", nullable = false)
+    private Long deletedMillis;
+
+    /** JPA requires a no-arg constructor. */
+    protected BuddyTombstone() {}
+
+    public Long getBuddyId() { return buddyId; }
+
+    public Long getAddressBookId() { return addressBookId; }
+
+    public Long getChangeSeq() { return changeSeq; }
+
+    public Long getDeletedMillis() { return deletedMillis; }
+
+    /** Composite id: the book the buddy left, and the buddy. */
+    public static class Key implements Serializable {
+        private Long addressBookId;
+        private Long buddyId;
+
+        protected Key() {}
+
+        public Key(Long addressBookId, Long buddyId) {
+            this.addressBookId = addressBookId;
+            this.buddyId = buddyId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(addressBookId, k.addressBookId) && Objects.equals(buddyId, k.buddyId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(addressBookId, buddyId);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package lab1;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface BuddyTombstoneRepository extends Repository<BuddyTombstone, BuddyTombstone.Key> {
+
+    /** Ids of a book's buddies deleted after sync position {@code since}, in deletion order. */
+    @Transactional(readOnly = true)
+    @Query("select t.buddyId from BuddyTombstone t where t.addressBookId = :addressBookId and t.changeSeq > :since order by t.changeSeq, t.buddyId")
+    List<Long> findRemovedSince(Long addressBookId, Long since);
+
+    /** Tombstones for those of {@code ids} that are still buddies of the book, in one insert-select. */
+    @Modifying
+    @Query("insert into BuddyTombstone (addressBookId, buddyId, changeSeq, deletedMillis)"
+            + " select b.addressBook.id, b.id, :changeSeq, :deletedMillis from BuddyInfo b"
+            + " where b.addressBook.id = :addressBookId and b.id in :ids")
+    int insertFor(Long addressBookId, Collection<Long> ids, Long changeSeq, Long deletedMillis);
+
+    /** Drops the book's tombstones for {@code ids}, for buddies moving (back) into it. */
+    @Modifying
+    @Query("delete from BuddyTombstone t where t.addressBookId = :addressBookId and t.buddyId in :ids")
+    int deleteFor(Long addressBookId, Collection<Long> ids);
+}
@@ -0,0 +1,9 @@
+package lab1;
+
+/** A buddy as the read endpoints return it: its columns only, no entity state or book link. */
+public record BuddyView(Long id, String name, String phone, String address) {
+
+    static BuddyView of(BuddyInfo b) {
+        return new BuddyView(b.getId(), b.getName(), b.getPhone(), b.getAddress());
+    }
+}
@@ -0,0 +1,4 @@
+package lab1;
+
+/** Counters for one second-level cache region, as reported by JCache statistics. */
+public record CacheRegionStats(String region, long hits, long misses, long puts, long removals, long evictions) {}
@@ -0,0 +1,46 @@
+package lab1;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GET /actuator/cachestats on the management port: hit/miss/eviction counters per
+ * second-level cache region. ("caches" is taken by Spring's own cache endpoint.)
+ */
+@Component
+@Endpoint(id = "cachestats")
+public class CacheStatsEndpoint {
+    private final CacheManager cacheManager;
+    private final MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+
+    public CacheStatsEndpoint(CacheManager hibernateCacheManager) {
+        this.cacheManager = hibernateCacheManager;
+    }
+
+    @ReadOperation
+    public List<CacheRegionStats> stats() throws JMException {
+        List<CacheRegionStats> out = new ArrayList<>();
+        for (String region : cacheManager.getCacheNames()) {
+            ObjectName name = new ObjectName("javax.cache:type=CacheStatistics"
+                    + ",CacheManager=" + cacheManager.getURI()
+                    + ",Cache=" + region);
+            if (!mbeans.isRegistered(name)) continue;
+            out.add(new CacheRegionStats(region,
+                    (Long) mbeans.getAttribute(name, "CacheHits"),
+                    (Long) mbeans.getAttribute(name, "CacheMisses"),
+                    (Long) mbeans.getAttribute(name, "CachePuts"),
+                    (Long) mbeans.getAttribute(name, "CacheRemovals"),
+                    (Long) mbeans.getAttribute(name, "CacheEvictions")));
+        }
+        return out;
+    }
+}
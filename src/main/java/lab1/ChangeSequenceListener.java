@@ -0,0 +1,144 @@
+package lab1;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PreDeleteEvent;
+import org.hibernate.event.spi.PreDeleteEventListener;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records buddy changes for delta sync as Hibernate writes them. The first buddy insert, update
+ * or delete of a book in a transaction bumps the book's change_seq in SQL; that value stamps
+ * every buddy the transaction writes for the book, and every tombstone it leaves.
+ * <p>
+ * The bump takes the book row's lock until commit, so transactions touching the same book get
+ * their numbers in commit order: a client that has seen N never misses a later commit with a
+ * number at or below N. Deleting a book drops its tombstones. Bulk statements (BuddyBulkService)
+ * take their number from {@link #seqFor(long, EntityManager)} and write their own tombstones.
+ */
+@Component
+public class ChangeSequenceListener implements PreInsertEventListener, PreUpdateEventListener, PreDeleteEventListener {
+    private static final String BOOK_PROPERTY = "addressBook";
+    private static final String SEQ_PROPERTY = "changeSeq";
+
+    // books already bumped, per session, until its transaction completes
+    private final Map<SharedSessionContractImplementor, Map<Long, Long>> seqs = new ConcurrentHashMap<>();
+
+    public ChangeSequenceListener(EntityManagerFactory emf) {
+        EventListenerRegistry listeners = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.PRE_INSERT, this);
+        listeners.appendListeners(EventType.PRE_UPDATE, this);
+        listeners.appendListeners(EventType.PRE_DELETE, this);
+    }
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        if (event.getEntity() instanceof BuddyInfo buddy) stamp(buddy, event.getPersister(), event.getState(), event.getSession());
+        return false;
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        if (event.getEntity() instanceof BuddyInfo buddy) stamp(buddy, event.getPersister(), event.getState(), event.getSession());
+        return false;
+    }
+
+    @Override
+    public boolean onPreDelete(PreDeleteEvent event) {
+        EventSource session = event.getSession();
+        if (event.getEntity() instanceof BuddyInfo) {
+            // the loaded state still names the book after an orphan removal cleared the field
+            Long bookId = bookId(event.getPersister(), event.getDeletedState());
+            if (bookId == null) return false;
+            long seq = seqFor(bookId, session);
+            Long buddyId = (Long) event.getId();
+            session.doWork(c -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "insert into buddy_tombstone (buddy_id, address_book_id, change_seq, deleted_millis) values (?, ?, ?, ?)")) {
+                    ps.setLong(1, buddyId);
+                    ps.setLong(2, bookId);
+                    ps.setLong(3, seq);
+                    ps.setLong(4, System.currentTimeMillis());
+                    ps.executeUpdate();
+                }
+            });
+        } else if (event.getEntity() instanceof AddressBook) {
+            Long bookId = (Long) event.getId();
+            session.doWork(c -> {
+                try (PreparedStatement ps = c.prepareStatement("delete from buddy_tombstone where address_book_id = ?")) {
+                    ps.setLong(1, bookId);
+                    ps.executeUpdate();
+                }
+            });
+        }
+        return false;
+    }
+
+    /**
+     * The book's change_seq for the transaction of {@code em}, bumped on first use; for bulk
+     * statements, which bypass the entity events, to stamp rows and tombstones with.
+     */
+    long seqFor(long bookId, EntityManager em) {
+        return seqFor(bookId, em.unwrap(EventSource.class));
+    }
+
+    private void stamp(BuddyInfo buddy, EntityPersister persister, Object[] state, EventSource session) {
+        Long bookId = bookId(persister, state);
+        if (bookId == null) return;
+        long seq = seqFor(bookId, session);
+        state[persister.getPropertyIndex(SEQ_PROPERTY)] = seq;
+        buddy.setChangeSeq(seq);
+    }
+
+    private static Long bookId(EntityPersister persister, Object[] state) {
+        // the id of a lazy proxy is read without initializing it
+        return state[persister.getPropertyIndex(BOOK_PROPERTY)] instanceof AddressBook book ? book.getId() : null;
+    }
+
+    /** The book's change_seq for the session's current transaction, bumping it on first use. */
+    private long seqFor(long bookId, EventSource session) {
+        Map<Long, Long> bumped = seqs.get(session);
+        if (bumped == null) {
+            bumped = new HashMap<>();
+            seqs.put(session, bumped);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> seqs.remove(s));
+        }
+        Long seq = bumped.get(bookId);
+        if (seq != null) return seq;
+        // plain SQL, so any database will do: the update takes the row lock, then the select
+        // reads the value this transaction wrote
+        seq = session.doReturningWork(c -> {
+            try (PreparedStatement bump = c.prepareStatement(
+                    "update address_book set change_seq = change_seq + 1 where id = ?")) {
+                bump.setLong(1, bookId);
+                if (bump.executeUpdate() == 0) return 0L;
+            }
+            try (PreparedStatement read = c.prepareStatement("select change_seq from address_book where id = ?")) {
+                read.setLong(1, bookId);
+                try (ResultSet rs = read.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            }
+        });
+        bumped.put(bookId, seq);
+        return seq;
+    }
+}
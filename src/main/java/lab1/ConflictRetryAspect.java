@@ -0,0 +1,44 @@
+package lab1;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/** Applies ConflictRetryPolicy to @RetryOnConflict methods, outside their transaction. */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1) // the transaction advisor is LOWEST_PRECEDENCE, so it runs inside
+public class ConflictRetryAspect {
+    private final ConflictRetryPolicy policy;
+
+    public ConflictRetryAspect(ConflictRetryPolicy policy) {
+        this.policy = policy;
+    }
+
+    @Around("@annotation(lab1.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint call) throws Throwable {
+        try {
+            return policy.execute(() -> {
+                try {
+                    return call.proceed();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new CheckedFailure(t);
+                }
+            });
+        } catch (CheckedFailure f) {
+            throw f.getCause();
+        }
+    }
+
+    /** Carries a checked exception through the Supplier-based policy. */
+    private static final class CheckedFailure extends RuntimeException {
+        CheckedFailure(Throwable cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package lab1;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Retries a unit of work that failed because another transaction changed the same book first:
+ * a version conflict, or a concurrent insert of the same buddy tripping the dedup constraint.
+ * Backoff is exponential with full jitter so competing writers spread out.
+ */
+@Component
+public class ConflictRetryPolicy {
+    static final String DEDUP_CONSTRAINT = "uk_buddy_info_book_dedup";
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public ConflictRetryPolicy(@Value("${addressbook.retry.max-attempts:10}") int maxAttempts,
+                               @Value("${addressbook.retry.initial-backoff:5ms}") Duration initialBackoff,
+                               @Value("${addressbook.retry.max-backoff:250ms}") Duration maxBackoff) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+    }
+
+    /** Runs {@code work}, retrying conflicts; rethrows the last conflict when attempts run out. */
+    public <T> T execute(Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return work.get();
+            } catch (RuntimeException e) {
+                if (!isConflict(e) || attempt >= maxAttempts) throw e;
+                backoff(attempt);
+            }
+        }
+    }
+
+    static boolean isConflict(Throwable e) {
+        if (e instanceof ConcurrencyFailureException) return true;
+        return e instanceof DataIntegrityViolationException
+                && String.valueOf(e.getMessage()).toLowerCase(Locale.ROOT).contains(DEDUP_CONSTRAINT);
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while backing off", e);
+        }
+    }
+}
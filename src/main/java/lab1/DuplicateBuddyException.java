@@ -0,0 +1,12 @@
+package lab1;
+
+/** Thrown when a buddy is added (or moved in) under {@link DuplicatePolicy#REJECT} and the book already has it. */
+public class DuplicateBuddyException extends IllegalStateException {
+    public DuplicateBuddyException(BuddyInfo duplicate) {
+        super("duplicate buddy: " + duplicate.getName() + " / " + duplicate.getPhone() + " / " + duplicate.getAddress());
+    }
+
+    public DuplicateBuddyException(String message) {
+        super(message);
+    }
+}
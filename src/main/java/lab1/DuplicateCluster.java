@@ -0,0 +1,10 @@
+package lab1;
+
+import java.util.List;
+
+/** Buddies (possibly in different address books) that look like the same contact. */
+public record DuplicateCluster(List<Member> members) {
+
+    /** One buddy of a cluster, as read from buddy_info. */
+    public record Member(long id, long addressBookId, String name, String phone) {}
+}
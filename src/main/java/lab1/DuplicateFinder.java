@@ -0,0 +1,230 @@
+package lab1;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Groups near-duplicate buddies into clusters without comparing every pair. Buddies are only
+ * compared within blocks: same normalized phone (last 10 digits), or same MinHash of their name
+ * trigrams (a few seeds, so similar names very likely share at least one). A pair matches when
+ * the phones are equal and the names are loosely alike, or when the names are close and the
+ * phones differ in at most one digit. Matches are merged into clusters with union-find.
+ * Blocks larger than {@code maxBlockSize} (placeholder phones, very common names) are skipped.
+ */
+public class DuplicateFinder {
+    static final int MINHASH_SEEDS = 4;
+    static final double SAME_PHONE_NAME_SIMILARITY = 0.3;
+    static final double CLOSE_NAME_SIMILARITY = 0.7;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_LETTERS = Pattern.compile("[^\\p{L}]+");
+    private static final Pattern NON_DIGITS = Pattern.compile("\\D");
+    private static final int ROW_BITS = 26;
+    private static final long ROW_MASK = (1L << ROW_BITS) - 1;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final ForkJoinPool pool;
+    private final int maxBlockSize;
+    private final AtomicLong skippedBlocks = new AtomicLong();
+
+    public DuplicateFinder(ForkJoinPool pool, int maxBlockSize) {
+        this.pool = pool;
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    /** Candidate clusters (two or more members) among the given buddies, largest first. */
+    public List<DuplicateCluster> find(List<DuplicateCluster.Member> buddies) {
+        if (buddies.size() > ROW_MASK) throw new IllegalArgumentException("too many buddies for one scan: " + buddies.size());
+        Prepared[] rows = pool.submit(() -> buddies.parallelStream().map(Prepared::new).toArray(Prepared[]::new)).join();
+
+        List<int[]> blocks = blocks(rows);
+        // compare within each block in parallel; each task returns its matching pairs
+        List<long[]> pairs = pool.submit(() -> blocks.parallelStream()
+                .map(block -> matches(rows, block))
+                .filter(p -> p.length > 0)
+                .toList()).join();
+
+        UnionFind uf = new UnionFind(rows.length);
+        for (long[] chunk : pairs) {
+            for (long pair : chunk) uf.union((int) (pair >>> 32), (int) pair);
+        }
+        Map<Integer, List<DuplicateCluster.Member>> byRoot = new HashMap<>();
+        for (int i = 0; i < rows.length; i++) {
+            if (uf.hasPartner(i)) byRoot.computeIfAbsent(uf.find(i), r -> new ArrayList<>()).add(rows[i].member);
+        }
+        return byRoot.values().stream()
+                .filter(m -> m.size() > 1)
+                .sorted((a, b) -> Integer.compare(b.size(), a.size()))
+                .map(DuplicateCluster::new)
+                .toList();
+    }
+
+    /** Blocks skipped for being larger than the cap in the last {@link #find} call. */
+    public long skippedBlocks() {
+        return skippedBlocks.get();
+    }
+
+    /**
+     * Row indexes sharing a block key. Each (key, row) is packed into one long and the array is
+     * sorted, so equal keys end up adjacent; no per-key collections are allocated.
+     */
+    private List<int[]> blocks(Prepared[] rows) {
+        long[] entries = new long[rows.length * (1 + MINHASH_SEEDS)];
+        int n = 0;
+        for (int i = 0; i < rows.length; i++) {
+            Prepared r = rows[i];
+            if (!r.phone.isEmpty()) entries[n++] = pack(0, Long.parseLong("1" + r.phone), i);
+            if (r.trigrams.length == 0) continue;
+            for (int s = 0; s < MINHASH_SEEDS; s++) entries[n++] = pack(s + 1, r.minHashes[s] & 0xffffffffL, i);
+        }
+        long[] sorted = Arrays.copyOf(entries, n);
+        Arrays.parallelSort(sorted);
+
+        List<int[]> blocks = new ArrayList<>();
+        skippedBlocks.set(0);
+        for (int from = 0; from < n; ) {
+            long key = sorted[from] >>> ROW_BITS;
+            int to = from + 1;
+            while (to < n && sorted[to] >>> ROW_BITS == key) to++;
+            int size = to - from;
+            if (size > maxBlockSize) {
+                skippedBlocks.incrementAndGet();
+            } else if (size > 1) {
+                int[] block = new int[size];
+                for (int k = 0; k < size; k++) block[k] = (int) (sorted[from + k] & ROW_MASK);
+                blocks.add(block);
+            }
+            from = to;
+        }
+        return blocks;
+    }
+
+    /** 3-bit key type, 35-bit key value, 26-bit row index. */
+    private static long pack(int type, long value, int row) {
+        return ((long) type << 61) | (value << ROW_BITS) | row;
+    }
+
+    private static long[] matches(Prepared[] rows, int[] block) {
+        long[] out = new long[4];
+        int n = 0;
+        for (int a = 0; a < block.length; a++) {
+            for (int b = a + 1; b < block.length; b++) {
+                if (isMatch(rows[block[a]], rows[block[b]])) {
+                    if (n == out.length) out = Arrays.copyOf(out, n * 2);
+                    out[n++] = ((long) block[a] << 32) | (block[b] & 0xffffffffL);
+                }
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    static boolean isMatch(Prepared x, Prepared y) {
+        double names = jaccard(x.trigrams, y.trigrams);
+        if (!x.phone.isEmpty() && x.phone.equals(y.phone)) return names >= SAME_PHONE_NAME_SIMILARITY;
+        return names >= CLOSE_NAME_SIMILARITY && digitsApart(x.phone, y.phone) <= 1;
+    }
+
+    /** Jaccard similarity of two sorted, distinct trigram hash arrays. */
+    static double jaccard(int[] a, int[] b) {
+        if (a.length == 0 || b.length == 0) return 0;
+        int i = 0, j = 0, common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) { common++; i++; j++; }
+            else if (a[i] < b[j]) i++;
+            else j++;
+        }
+        return (double) common / (a.length + b.length - common);
+    }
+
+    private static int digitsApart(String a, String b) {
+        if (a.length() != b.length()) return Integer.MAX_VALUE;
+        int d = 0;
+        for (int i = 0; i < a.length(); i++) if (a.charAt(i) != b.charAt(i)) d++;
+        return d;
+    }
+
+    /** Last 10 digits, so a leading country code 1 does not split a block. */
+    static String phoneKey(String phone) {
+        String d = phone == null ? "" : NON_DIGITS.matcher(phone).replaceAll("");
+        return d.length() > 10 ? d.substring(d.length() - 10) : d;
+    }
+
+    /** Trigram hashes of the folded name, padded so short names still yield some. */
+    static int[] trigrams(String name) {
+        String folded = name == null ? "" : MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        folded = NON_LETTERS.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        if (folded.isEmpty()) return new int[0];
+        String padded = "  " + folded + " ";
+        int[] out = new int[padded.length() - 2];
+        for (int i = 0; i < out.length; i++) out[i] = padded.substring(i, i + 3).hashCode();
+        Arrays.sort(out);
+        return Arrays.stream(out).distinct().toArray();
+    }
+
+    /** A buddy with its comparison keys computed once. */
+    static final class Prepared {
+        final DuplicateCluster.Member member;
+        final String phone;
+        final int[] trigrams;
+        final int[] minHashes = new int[MINHASH_SEEDS];
+
+        Prepared(DuplicateCluster.Member member) {
+            this.member = member;
+            this.phone = phoneKey(member.phone());
+            this.trigrams = trigrams(member.name());
+            for (int s = 0; s < MINHASH_SEEDS; s++) {
+                int min = Integer.MAX_VALUE;
+                for (int t : trigrams) min = Math.min(min, mix(t ^ SEEDS[s]));
+                minHashes[s] = min;
+            }
+        }
+
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x7feb352d;
+            h ^= h >>> 15;
+            h *= 0x846ca68b;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /** Union-find over row indexes with path halving and union by size. */
+    private static final class UnionFind {
+        private final int[] parent;
+        private final int[] size;
+
+        UnionFind(int n) {
+            parent = new int[n];
+            size = new int[n];
+            for (int i = 0; i < n; i++) { parent[i] = i; size[i] = 1; }
+        }
+
+        int find(int x) {
+            while (parent[x] != x) {
+                parent[x] = parent[parent[x]];
+                x = parent[x];
+            }
+            return x;
+        }
+
+        void union(int a, int b) {
+            int ra = find(a), rb = find(b);
+            if (ra == rb) return;
+            if (size[ra] < size[rb]) { int t = ra; ra = rb; rb = t; }
+            parent[rb] = ra;
+            size[ra] += size[rb];
+        }
+
+        boolean hasPartner(int x) {
+            return size[find(x)] > 1;
+        }
+    }
+}
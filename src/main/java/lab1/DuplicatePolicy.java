@@ -0,0 +1,14 @@
+package lab1;
+
+/**
+ * What to do when an added buddy has the same business key (normalized
+ * name + phone + address, see {@link BuddyInfo#dedupKey}) as one already in the book.
+ */
+public enum DuplicatePolicy {
+    /** Fail the request with {@link DuplicateBuddyException}. */
+    REJECT,
+    /** Keep the existing buddy and drop the new one. */
+    SKIP,
+    /** Overwrite the existing buddy's fields with the new values. */
+    UPSERT
+}
@@ -0,0 +1,15 @@
+package lab1;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/** Lets request parameters use lower-case policy names: ?onDuplicate=reject|skip|upsert. */
+@Component
+public class DuplicatePolicyConverter implements Converter<String, DuplicatePolicy> {
+    @Override
+    public DuplicatePolicy convert(String source) {
+        return DuplicatePolicy.valueOf(source.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,84 @@
+package lab1;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * /actuator/duplicates on the management port: starts and polls the cross-book duplicate scan
+ * and serves its clusters. An operator tool, so it is kept off the public API port.
+ */
+@Component
+@WebEndpoint(id = "duplicates")
+public class DuplicateScanEndpoint {
+    static final String CLUSTERS = "clusters";
+
+    private final DuplicateScanService scanService;
+    private final ObjectWriter clusterWriter;
+
+    public DuplicateScanEndpoint(DuplicateScanService scanService, ObjectMapper objectMapper) {
+        this.scanService = scanService;
+        this.clusterWriter = objectMapper.writerFor(DuplicateCluster.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    // POST: start a scan over every buddy in every book; 202 with its status (also if one is already running)
+    @WriteOperation
+    public WebEndpointResponse<DuplicateScanStatus> start() {
+        return new WebEndpointResponse<>(scanService.start(), 202);
+    }
+
+    // GET: state, counts, timing of the latest scan
+    @ReadOperation
+    public DuplicateScanStatus status() {
+        return scanService.status();
+    }
+
+    // GET /clusters: clusters of the last completed scan as NDJSON, one cluster per line, largest
+    // first, each serialized only as the response is written; 409 while the first scan has not finished.
+    @ReadOperation(produces = BuddyImportController.NDJSON)
+    public WebEndpointResponse<Resource> clusters(@Selector String part) {
+        if (!CLUSTERS.equals(part)) return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        Optional<List<DuplicateCluster>> clusters = scanService.clusters();
+        if (clusters.isEmpty()) return new WebEndpointResponse<>(409);
+        Iterator<DuplicateCluster> it = clusters.get().iterator();
+        Enumeration<InputStream> lines = new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() { return it.hasNext(); }
+
+            @Override
+            public InputStream nextElement() { return new ByteArrayInputStream(line(it.next())); }
+        };
+        return new WebEndpointResponse<>(new InputStreamResource(new SequenceInputStream(lines)));
+    }
+
+    private byte[] line(DuplicateCluster cluster) {
+        try {
+            byte[] json = clusterWriter.writeValueAsBytes(cluster);
+            byte[] line = Arrays.copyOf(json, json.length + 1);
+            line[json.length] = '\n';
+            return line;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
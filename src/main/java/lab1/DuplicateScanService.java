@@ -0,0 +1,131 @@
+package lab1;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs DuplicateFinder over every buddy as a background job, one at a time. buddy_info is read
+ * in id-range partitions (of every shard, when sharded) in parallel on the scan's fork-join pool, then the finder blocks,
+ * compares and clusters on the same pool. The latest result is kept until the next scan.
+ */
+@Service
+public class DuplicateScanService {
+    private final JdbcTemplate jdbc;
+    private final int shards;
+    private final int parallelism;
+    private final int partitionSize;
+    private final int maxBlockSize;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "duplicate-scan");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile DuplicateScanStatus status = DuplicateScanStatus.idle();
+    private volatile List<DuplicateCluster> clusters;
+
+    public DuplicateScanService(DataSource dataSource,
+                                ObjectProvider<ShardDirectory> shards,
+                                @Value("${addressbook.duplicates.parallelism:0}") int parallelism,
+                                @Value("${addressbook.duplicates.partition-size:50000}") int partitionSize,
+                                @Value("${addressbook.duplicates.max-block-size:2000}") int maxBlockSize) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(BuddyInfoRepository.EXPORT_FETCH_SIZE);
+        this.shards = ShardDirectory.shardCount(shards);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.partitionSize = partitionSize;
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    /** Starts a scan unless one is running; returns the status either way. */
+    public synchronized DuplicateScanStatus start() {
+        if (status.state() == DuplicateScanStatus.State.RUNNING) return status;
+        status = new DuplicateScanStatus(DuplicateScanStatus.State.RUNNING, Instant.now(), null, 0, 0, 0, null);
+        runner.execute(this::run);
+        return status;
+    }
+
+    public DuplicateScanStatus status() {
+        return status;
+    }
+
+    /** Clusters from the last completed scan, largest first; empty before the first one finishes. */
+    public Optional<List<DuplicateCluster>> clusters() {
+        return Optional.ofNullable(clusters);
+    }
+
+    /** Runs a scan on the calling thread; what the background job does. */
+    public List<DuplicateCluster> scan() {
+        Instant started = Instant.now();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<DuplicateCluster.Member> buddies = load(pool);
+            DuplicateFinder finder = new DuplicateFinder(pool, maxBlockSize);
+            List<DuplicateCluster> found = finder.find(buddies);
+            status = new DuplicateScanStatus(DuplicateScanStatus.State.DONE, started, Instant.now(),
+                    buddies.size(), found.size(), finder.skippedBlocks(), null);
+            return found;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void run() {
+        try {
+            clusters = scan();
+        } catch (RuntimeException e) {
+            status = new DuplicateScanStatus(DuplicateScanStatus.State.FAILED, status.startedAt(), Instant.now(),
+                    0, 0, 0, e.toString());
+        }
+    }
+
+    // partitions are {shard, from, to}; every shard is split by its own id range
+    private List<DuplicateCluster.Member> load(ForkJoinPool pool) {
+        List<long[]> partitions = new ArrayList<>();
+        for (int s = 0; s < shards; s++) {
+            Map<String, Object> range = ShardContext.onShard(s,
+                    () -> jdbc.queryForMap("select min(id) lo, max(id) hi from buddy_info"));
+            if (range.get("lo") == null) continue;
+            long lo = ((Number) range.get("lo")).longValue();
+            long hi = ((Number) range.get("hi")).longValue();
+            for (long from = lo; from <= hi; from += partitionSize) {
+                partitions.add(new long[]{s, from, Math.min(hi, from + partitionSize - 1)});
+            }
+        }
+        List<List<DuplicateCluster.Member>> parts = pool.submit(() -> partitions.parallelStream()
+                .map(p -> ShardContext.onShard((int) p[0], () -> loadPartition(p[1], p[2])))
+                .toList()).join();
+        List<DuplicateCluster.Member> all = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+        parts.forEach(all::addAll);
+        return all;
+    }
+
+    private List<DuplicateCluster.Member> loadPartition(long from, long to) {
+        List<DuplicateCluster.Member> rows = new ArrayList<>();
+        jdbc.query("select id, address_book_id, name, phone from buddy_info"
+                        + " where id between ? and ? and address_book_id is not null",
+                (RowCallbackHandler) rs -> rows.add(new DuplicateCluster.Member(
+                        rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4))),
+                from, to);
+        return rows;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+    }
+}
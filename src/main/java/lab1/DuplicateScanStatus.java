@@ -0,0 +1,19 @@
+package lab1;
+
+import java.time.Instant;
+
+/** Progress and outcome of the latest duplicate scan (GET /actuator/duplicates on the management port). */
+public record DuplicateScanStatus(State state,
+                                  Instant startedAt,
+                                  Instant finishedAt,
+                                  long buddiesScanned,
+                                  long clusters,
+                                  long skippedBlocks,
+                                  String error) {
+
+    public enum State { IDLE, RUNNING, DONE, FAILED }
+
+    static DuplicateScanStatus idle() {
+        return new DuplicateScanStatus(State.IDLE, null, null, 0, 0, 0, null);
+    }
+}
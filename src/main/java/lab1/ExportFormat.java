@@ -0,0 +1,21 @@
+package lab1;
+
+/** Wire formats for {@code GET /addressbooks/{id}/export}. */
+public enum ExportFormat {
+    /** One JSON object per line: {"id":1,"name":"...","phone":"...","address":"..."} */
+    NDJSON("application/x-ndjson", "ndjson"),
+    /** RFC 4180 CSV with an id,name,phone,address header row. */
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String contentType() { return contentType; }
+
+    public String extension() { return extension; }
+}
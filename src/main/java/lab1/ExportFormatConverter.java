@@ -0,0 +1,15 @@
+package lab1;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/** Lets request parameters use lower-case format names: ?format=ndjson|csv. */
+@Component
+public class ExportFormatConverter implements Converter<String, ExportFormat> {
+    @Override
+    public ExportFormat convert(String source) {
+        return ExportFormat.valueOf(source.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,8 @@
+package lab1;
+
+/** Thrown when the write-behind queue cannot take another buddy: it is full, or shutting down. */
+public class IngestQueueFullException extends IllegalStateException {
+    public IngestQueueFullException(String message) {
+        super(message);
+    }
+}
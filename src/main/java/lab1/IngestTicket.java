@@ -0,0 +1,26 @@
+package lab1;
+
+/**
+ * Outcome of a buddy accepted by the write-behind queue (POST with {@code Prefer: respond-async}).
+ * {@code buddyId} is set once WRITTEN; a DUPLICATE was skipped because the book already had it; {@code error} explains a FAILED ticket.
+ */
+public record IngestTicket(String id, Long addressBookId, State state, Long buddyId, String error) {
+
+    public enum State { QUEUED, WRITTEN, DUPLICATE, FAILED }
+
+    static IngestTicket queued(String id, Long addressBookId) {
+        return new IngestTicket(id, addressBookId, State.QUEUED, null, null);
+    }
+
+    IngestTicket written(Long buddyId) {
+        return new IngestTicket(id, addressBookId, State.WRITTEN, buddyId, null);
+    }
+
+    IngestTicket duplicate() {
+        return new IngestTicket(id, addressBookId, State.DUPLICATE, null, null);
+    }
+
+    IngestTicket failed(String error) {
+        return new IngestTicket(id, addressBookId, State.FAILED, null, error);
+    }
+}
@@ -0,0 +1,133 @@
+package lab1;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps how many threads may hold a JDBC connection at once. With virtual threads there is no
+ * request-thread limit any more, so thousands of requests could pile onto the pool; the gate
+ * admits as many as the pool has connections (behind the replica or shard router, all its
+ * pools together), queues the rest fairly, and fails a request with
+ * {@link SQLTransientConnectionException} (503) once it has waited too long.
+ * On by default whenever spring.threads.virtual.enabled is. Wraps the DataSource first, so it
+ * sees the pools themselves; QueryCounter wraps the gate.
+ */
+@Component
+@ConditionalOnProperty(name = "addressbook.jdbc-gate.enabled", havingValue = "true")
+public class JdbcConcurrencyGate implements BeanPostProcessor, Ordered {
+    static final int DEFAULT_POOL_SIZE = 10;
+
+    private final Environment env;
+
+    public JdbcConcurrencyGate(Environment env) {
+        this.env = env;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource ds) || bean instanceof GatedDataSource) return bean;
+        int permits = env.getProperty("addressbook.jdbc-gate.permits", Integer.class, poolSize(ds));
+        Duration wait = env.getProperty("addressbook.jdbc-gate.acquire-timeout", Duration.class, Duration.ofSeconds(5));
+        return new GatedDataSource(ds, permits, wait);
+    }
+
+    /** Connections the DataSource can hand out at once: its pool size, or the sum over a router's pools. */
+    static int poolSize(DataSource ds) {
+        if (ds instanceof RoutedPools routed) {
+            return routed.pools().stream().mapToInt(JdbcConcurrencyGate::poolSize).sum();
+        }
+        // Hikari reports -1 until the pool starts, meaning its default of 10
+        int size = ds instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : -1;
+        return size > 0 ? size : DEFAULT_POOL_SIZE;
+    }
+
+    /** DataSource whose connections each hold one permit until closed. */
+    static class GatedDataSource extends DelegatingDataSource {
+        private final Semaphore permits;
+        private final Duration wait;
+
+        GatedDataSource(DataSource target, int permits, Duration wait) {
+            super(target);
+            this.permits = new Semaphore(permits, true);
+            this.wait = wait;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            try {
+                return releasingOnClose(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            try {
+                return releasingOnClose(super.getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        int availablePermits() { return permits.availablePermits(); }
+
+        private void acquire() throws SQLException {
+            try {
+                if (!permits.tryAcquire(wait.toMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new SQLTransientConnectionException("JDBC gate: no connection permit within " + wait);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("JDBC gate: interrupted while waiting", e);
+            }
+        }
+
+        private Connection releasingOnClose(Connection target) {
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("close")) {
+                            if (!released.compareAndSet(false, true)) return null;
+                            try {
+                                return method.invoke(target, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            } finally {
+                                permits.release();
+                            }
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
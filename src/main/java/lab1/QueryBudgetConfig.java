@@ -0,0 +1,25 @@
+package lab1;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/** Per-request query budget logging; thresholds under addressbook.query-budget.*. */
+@Configuration
+public class QueryBudgetConfig {
+
+    @Bean
+    public FilterRegistrationBean<QueryBudgetFilter> queryBudgetFilter(
+            QueryCounter counter,
+            @Value("${addressbook.query-budget.max-queries:20}") int maxQueries,
+            @Value("${addressbook.query-budget.max-duration:500ms}") Duration maxDuration) {
+        FilterRegistrationBean<QueryBudgetFilter> registration =
+                new FilterRegistrationBean<>(new QueryBudgetFilter(counter, maxQueries, maxDuration));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
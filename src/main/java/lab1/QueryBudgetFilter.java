@@ -0,0 +1,49 @@
+package lab1;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Logs a warning for any request that runs more statements or takes longer than its budget,
+ * the usual sign of an N+1 load (e.g. serialization walking a lazy association row by row).
+ * Registered by QueryBudgetConfig.
+ */
+public class QueryBudgetFilter extends OncePerRequestFilter {
+    private static final Logger log = LoggerFactory.getLogger(QueryBudgetFilter.class);
+
+    private final QueryCounter counter;
+    private final int maxQueries;
+    private final Duration maxDuration;
+
+    public QueryBudgetFilter(QueryCounter counter, int maxQueries, Duration maxDuration) {
+        this.counter = counter;
+        this.maxQueries = maxQueries;
+        this.maxDuration = maxDuration;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        counter.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            QueryCounter.Tally tally = counter.end();
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (tally.statements() > maxQueries || millis > maxDuration.toMillis()) {
+                log.warn("{} {} over query budget: {} statements ({} ms in JDBC), {} ms total (budget {} statements, {} ms)",
+                        request.getMethod(), request.getRequestURI(), tally.statements(), tally.elapsedMillis(),
+                        millis, maxQueries, maxDuration.toMillis());
+            }
+        }
+    }
+}
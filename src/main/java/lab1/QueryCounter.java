@@ -0,0 +1,77 @@
+package lab1;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the JDBC statements the application executes. Wraps the DataSource with
+ * datasource-proxy and keeps a running total plus, between {@link #begin()} and
+ * {@link #end()}, a tally for the current thread (one HTTP request, see QueryBudgetFilter).
+ * A JDBC batch counts once. Wraps last, outside any other DataSource wrapper (the JDBC gate).
+ */
+@Component
+public class QueryCounter implements BeanPostProcessor, Ordered, QueryExecutionListener {
+    private final AtomicLong total = new AtomicLong();
+    private final ThreadLocal<Tally> current = new ThreadLocal<>();
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource ds) || bean instanceof ProxyDataSource) return bean;
+        return ProxyDataSourceBuilder.create(ds).name(beanName).listener(this).build();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {}
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        total.incrementAndGet();
+        Tally tally = current.get();
+        if (tally != null) {
+            tally.statements++;
+            tally.elapsedMillis += execInfo.getElapsedTime();
+        }
+    }
+
+    /** Statements executed so far on any thread. */
+    public long total() {
+        return total.get();
+    }
+
+    /** Starts counting statements on this thread. */
+    public void begin() {
+        current.set(new Tally());
+    }
+
+    /** Stops counting on this thread and returns what it ran since {@link #begin()}. */
+    public Tally end() {
+        Tally tally = current.get();
+        current.remove();
+        return tally == null ? new Tally() : tally;
+    }
+
+    /** Statements and their summed execution time for one unit of work. */
+    public static final class Tally {
+        long statements;
+        long elapsedMillis;
+
+        public long statements() { return statements; }
+
+        public long elapsedMillis() { return elapsedMillis; }
+    }
+}
@@ -0,0 +1,138 @@
+package lab1;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only side of ReplicaRoutingDataSource: hands out connections round-robin from the
+ * replicas that are currently within {@code max-lag}, and from the primary when none is.
+ * <p>
+ * Lag is measured with a heartbeat: every {@code check-interval} the current time is written
+ * to replica_heartbeat on the primary and read back from each replica; a replica's lag is how
+ * old the beat it has is. A replica that cannot be reached, or has no beat yet, is skipped.
+ * The heartbeat table is created on the primary once, when the pool is built.
+ */
+public class ReplicaPool extends AbstractDataSource implements AutoCloseable {
+    static final String HEARTBEAT_TABLE = "replica_heartbeat";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final JdbcTemplate primaryJdbc;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter fallbacks;
+    private final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "replica-lag-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ReplicaPool(DataSource primary, List<HikariDataSource> replicas, Duration maxLag,
+                       Duration checkInterval, MeterRegistry registry) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.maxLagMillis = maxLag.toMillis();
+        this.primaryJdbc = new JdbcTemplate(primary);
+        this.fallbacks = Counter.builder("addressbook.replica.fallbacks")
+                .description("Read-only connections served by the primary because no replica was usable")
+                .register(registry);
+        for (Replica r : this.replicas) {
+            Gauge.builder("addressbook.replica.lag", r, Replica::lagSeconds)
+                    .description("Age of the newest heartbeat seen on the replica; NaN while unreachable")
+                    .baseUnit("seconds")
+                    .tag("replica", r.pool.getPoolName())
+                    .register(registry);
+        }
+        primaryJdbc.execute("create table if not exists " + HEARTBEAT_TABLE
+                + " (id int primary key, beat_millis bigint not null)");
+        monitor.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        int n = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), n);
+        for (int i = 0; i < n; i++) {
+            Replica r = replicas.get((start + i) % n);
+            if (r.lagMillis > maxLagMillis) continue;
+            try {
+                return r.pool.getConnection();
+            } catch (SQLException e) {
+                r.lagMillis = Long.MAX_VALUE; // until the next check finds it again
+            }
+        }
+        fallbacks.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // like the Hikari pools behind it: credentials come from configuration
+        throw new SQLFeatureNotSupportedException("replica credentials come from configuration");
+    }
+
+    /** Writes a fresh heartbeat to the primary and re-measures every replica's lag. */
+    void check() {
+        long now = System.currentTimeMillis();
+        try {
+            beat(now);
+        } catch (RuntimeException e) {
+            return; // primary busy; keep the last measurements
+        }
+        for (Replica r : replicas) {
+            try {
+                Long seen = new JdbcTemplate(r.pool).queryForObject(
+                        "select beat_millis from " + HEARTBEAT_TABLE + " where id = 1", Long.class);
+                r.lagMillis = seen == null ? Long.MAX_VALUE : Math.max(0, now - seen);
+            } catch (RuntimeException e) {
+                r.lagMillis = Long.MAX_VALUE;
+            }
+        }
+    }
+
+    private void beat(long now) {
+        if (primaryJdbc.update("update " + HEARTBEAT_TABLE + " set beat_millis = ? where id = 1", now) == 0) {
+            primaryJdbc.update("insert into " + HEARTBEAT_TABLE + " (id, beat_millis) values (1, ?)", now);
+        }
+    }
+
+    /** The replicas' pools, in configuration order. */
+    List<HikariDataSource> pools() {
+        return replicas.stream().map(r -> r.pool).toList();
+    }
+
+    @Override
+    public void close() {
+        monitor.shutdownNow();
+        for (Replica r : replicas) r.pool.close();
+    }
+
+    private static final class Replica {
+        final HikariDataSource pool;
+        volatile long lagMillis = Long.MAX_VALUE; // unknown until the first check
+
+        Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        double lagSeconds() {
+            long lag = lagMillis;
+            return lag == Long.MAX_VALUE ? Double.NaN : lag / 1000.0;
+        }
+    }
+}
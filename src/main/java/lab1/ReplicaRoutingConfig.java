@@ -0,0 +1,59 @@
+package lab1;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single pooled DataSource with a primary pool plus one pool per read replica
+ * (addressbook.replicas.*), routed by ReplicaRoutingDataSource. Off by default.
+ * <p>
+ * Needs spring.jpa.open-in-view=false: an open-in-view EntityManager keeps the connection of
+ * a request's first transaction, so a write after a read-only lookup would land on a replica.
+ */
+@Configuration
+@ConditionalOnProperty(name = "addressbook.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource dataSource(DataSourceProperties properties,
+                                               MeterRegistry registry,
+                                               @Value("${spring.jpa.open-in-view:true}") boolean openInView,
+                                               @Value("${addressbook.replicas.urls}") List<String> urls,
+                                               @Value("${addressbook.replicas.username:${spring.datasource.username:sa}}") String username,
+                                               @Value("${addressbook.replicas.password:${spring.datasource.password:}}") String password,
+                                               @Value("${addressbook.replicas.pool-size:10}") int poolSize,
+                                               @Value("${addressbook.replicas.max-lag:2s}") Duration maxLag,
+                                               @Value("${addressbook.replicas.check-interval:500ms}") Duration checkInterval) {
+        if (openInView) {
+            throw new IllegalStateException("addressbook.replicas.enabled requires spring.jpa.open-in-view=false");
+        }
+        if (urls.isEmpty()) throw new IllegalStateException("addressbook.replicas.urls is empty");
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        List<HikariDataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(urls.get(i)).username(username).password(password)
+                    .build();
+            replica.setPoolName("replica-" + i);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            replica.setMetricRegistry(registry);
+            replicas.add(replica);
+        }
+        // the primary pool's metrics are bound by Boot, which unwraps the routing proxy
+        return new ReplicaRoutingDataSource(primary, new ReplicaPool(primary, replicas, maxLag, checkInterval, registry));
+    }
+}
@@ -0,0 +1,38 @@
+package lab1;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The application DataSource when read replicas are enabled. Connections are lazy, so the
+ * target is picked on first use: read-only transactions ({@code @Transactional(readOnly = true)},
+ * which marks the connection read-only before any statement runs) go to the ReplicaPool,
+ * everything else to the primary. A connection never switches target once it has one.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements RoutedPools, AutoCloseable {
+    private final HikariDataSource primary;
+    private final ReplicaPool replicas;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, ReplicaPool replicas) {
+        super(primary);
+        this.primary = primary;
+        this.replicas = replicas;
+        setReadOnlyDataSource(replicas);
+    }
+
+    @Override
+    public List<HikariDataSource> pools() {
+        List<HikariDataSource> pools = new ArrayList<>(replicas.pools());
+        pools.add(0, primary);
+        return pools;
+    }
+
+    @Override
+    public void close() {
+        replicas.close();
+        primary.close();
+    }
+}
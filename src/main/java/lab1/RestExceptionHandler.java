@@ -0,0 +1,53 @@
+package lab1;
+
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.NoSuchElementException;
+
+/** Error mapping shared by the REST controllers. */
+@RestControllerAdvice
+public class RestExceptionHandler {
+
+    // Simple error mapping
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler(NoSuchElementException.class)
+    public String notFound(NoSuchElementException e) { return "Not found"; }
+
+    // JDBC gate or pool exhausted: tell the client to back off rather than fail hard
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(CannotCreateTransactionException.class)
+    public String busy(CannotCreateTransactionException e) { return "Database busy, retry later"; }
+
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(DuplicateBuddyException.class)
+    public String duplicate(DuplicateBuddyException e) { return e.getMessage(); }
+
+    // Still conflicting after @RetryOnConflict gave up
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public String conflict(ConcurrencyFailureException e) { return "Concurrent update, retry later"; }
+
+    // Write-behind queue full: back off and retry
+    @ExceptionHandler(IngestQueueFullException.class)
+    public ResponseEntity<String> queueFull(IngestQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<String> integrity(DataIntegrityViolationException e) {
+        if (ConflictRetryPolicy.isConflict(e)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Concurrent update, retry later");
+        }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Data integrity violation");
+    }
+}
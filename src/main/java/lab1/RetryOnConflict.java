@@ -0,0 +1,16 @@
+package lab1;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Re-runs the annotated (transactional) method when it loses an optimistic-locking race,
+ * with backoff, per ConflictRetryPolicy. The retry wraps the transaction, so every attempt
+ * starts fresh; once attempts run out the conflict surfaces as a 409.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
@@ -0,0 +1,10 @@
+package lab1;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.List;
+
+/** A routing DataSource over several connection pools (replicas, shards); the JDBC gate sizes itself from them. */
+interface RoutedPools {
+    List<HikariDataSource> pools();
+}
@@ -0,0 +1,40 @@
+package lab1;
+
+import org.ehcache.config.Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.Resource;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands Hibernate's JCache region factory a cache manager owned by this application context.
+ * JCache providers share managers by URI, so each context gets its own URI; otherwise two
+ * contexts in one JVM (e.g. test slices on different databases) would read each other's entries.
+ */
+@org.springframework.context.annotation.Configuration
+public class SecondLevelCacheConfig {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${addressbook.cache.config:classpath:ehcache.xml}") Resource config)
+            throws IOException {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider)
+                Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        Configuration xml = new XmlConfiguration(config.getURL(), getClass().getClassLoader());
+        return provider.getCacheManager(URI.create("addressbook-l2-" + INSTANCES.incrementAndGet()), xml);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheManager(CacheManager hibernateCacheManager) {
+        return props -> props.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
@@ -0,0 +1,43 @@
+package lab1;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/shards")
+@ConditionalOnProperty(name = "addressbook.shards.enabled", havingValue = "true")
+public class ShardAdminController {
+    private final ShardRebalancer rebalancer;
+
+    public ShardAdminController(ShardRebalancer rebalancer) {
+        this.rebalancer = rebalancer;
+    }
+
+    // Books and buddies per shard
+    @GetMapping
+    public List<ShardStats> stats() {
+        return rebalancer.stats();
+    }
+
+    // Move one book: POST /admin/shards/books/42/move?to=2 -> 204; 404 if the book is unknown, 400 for an unknown shard
+    @PostMapping("/books/{bookId}/move")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void move(@PathVariable long bookId, @RequestParam int to) {
+        if (to < 0 || to >= rebalancer.shardCount()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "no shard " + to);
+        }
+        rebalancer.move(bookId, to);
+    }
+
+    // Move every book that is not on its ring shard (e.g. after adding a shard) back onto it
+    @PostMapping("/rebalance")
+    public RebalanceResult rebalance() {
+        return new RebalanceResult(rebalancer.rebalance());
+    }
+
+    public record RebalanceResult(int moved) {}
+}
@@ -0,0 +1,100 @@
+package lab1;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.DelayedDropRegistryNotAvailableImpl;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Startup work for sharding, after Hibernate has built the schema on shard 0 and before any
+ * request is served:
+ * <ul>
+ *   <li>applies the same schema update to the other shards;</li>
+ *   <li>interleaves the id sequences so ids are unique across shards: with n shards, shard k
+ *       hands out the pooled blocks ending at (k+1)*50 + j*n*50, above the highest id any shard
+ *       holds (assumes no other instance is inserting meanwhile);</li>
+ *   <li>rebuilds the ShardDirectory from the book ids each shard actually holds.</li>
+ * </ul>
+ */
+public class ShardBootstrap implements Integrator {
+    private static final Logger log = LoggerFactory.getLogger(ShardBootstrap.class);
+
+    /** Pooled sequences and their tables; 50 is the allocationSize of both entities. */
+    static final Map<String, String> SEQUENCES = Map.of("address_book_seq", "address_book", "buddy_info_seq", "buddy_info");
+    static final int BLOCK = 50;
+
+    private volatile Metadata metadata;
+    private volatile SessionFactoryImplementor sessionFactory;
+
+    // Hibernate hands over the mapping metadata here (hibernate.integrator_provider)
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        this.metadata = metadata;
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {}
+
+    /** Runs the steps above; ShardingConfig calls it once all singletons, Hibernate included, exist. */
+    public void run(DataSource dataSource, ShardDirectory directory) {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        int shards = directory.shardCount();
+        Map<String, Object> settings = new HashMap<>(sessionFactory.getProperties());
+        settings.put(AvailableSettings.HBM2DDL_AUTO, "update");
+        for (int s = 1; s < shards; s++) {
+            ShardContext.onShard(s, () -> {
+                SchemaManagementToolCoordinator.process(metadata, sessionFactory.getServiceRegistry(), settings,
+                        DelayedDropRegistryNotAvailableImpl.INSTANCE);
+                return null;
+            });
+        }
+
+        for (Map.Entry<String, String> seq : SEQUENCES.entrySet()) {
+            long maxId = 0;
+            for (int s = 0; s < shards; s++) {
+                Long max = ShardContext.onShard(s, () -> jdbc.queryForObject("select max(id) from " + seq.getValue(), Long.class));
+                if (max != null) maxId = Math.max(maxId, max);
+            }
+            for (int s = 0; s < shards; s++) {
+                long start = firstBlockEnd(maxId, s, shards);
+                ShardContext.onShard(s, () -> {
+                    jdbc.execute("alter sequence " + seq.getKey() + " restart with " + start
+                            + " increment by " + (long) shards * BLOCK);
+                    return null;
+                });
+            }
+        }
+
+        for (int s = 0; s < shards; s++) {
+            int shard = s;
+            ShardContext.onShard(s, () -> {
+                jdbc.query("select id from address_book", (RowCallbackHandler) rs -> {
+                    long id = rs.getLong(1);
+                    if (directory.homeOf(id) != shard) directory.place(id, shard);
+                });
+                return null;
+            });
+        }
+        log.info("Sharding over {} shards; {} books away from their ring shard", shards, directory.displaced().size());
+    }
+
+    /** First sequence value for shard k: above maxId and congruent to (k+1)*BLOCK modulo n*BLOCK. */
+    static long firstBlockEnd(long maxId, int shard, int shards) {
+        long stride = (long) shards * BLOCK;
+        long v = maxId + BLOCK;
+        return v + Math.floorMod((long) (shard + 1) * BLOCK - v, stride);
+    }
+}
@@ -0,0 +1,117 @@
+package lab1;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Which shard the current thread's JDBC work belongs to, read by ShardRoutingDataSource when
+ * it hands out a connection: an explicit shard if one is set (scatter-gather, maintenance),
+ * else the shard of the current book, else shard 0. Without sharding nothing reads it.
+ * <p>
+ * Also holds per-book pins: work on a book holds a shared pin and a move between shards
+ * takes it exclusively, so the two never overlap.
+ */
+public final class ShardContext {
+    private static final ThreadLocal<Long> BOOK = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+    private static final ReadWriteLock[] PINS = new ReadWriteLock[256];
+
+    static {
+        for (int i = 0; i < PINS.length; i++) PINS[i] = new ReentrantReadWriteLock(true);
+    }
+
+    private ShardContext() {}
+
+    public static Long book() {
+        return BOOK.get();
+    }
+
+    public static Integer shard() {
+        return SHARD.get();
+    }
+
+    /** Runs {@code work} against the shard holding {@code bookId}. */
+    public static <T> T forBook(Long bookId, Supplier<T> work) {
+        Long previous = BOOK.get();
+        BOOK.set(bookId);
+        try {
+            return work.get();
+        } finally {
+            restore(BOOK, previous);
+        }
+    }
+
+    /** Runs {@code work} against one shard, whatever book is current. */
+    public static <T> T onShard(int shard, Supplier<T> work) {
+        Integer previous = SHARD.get();
+        SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            restore(SHARD, previous);
+        }
+    }
+
+    /** Captures this thread's context so another thread can run {@code task} with it. */
+    public static Runnable propagate(Runnable task) {
+        Long book = BOOK.get();
+        Integer shard = SHARD.get();
+        return () -> {
+            Long previousBook = BOOK.get();
+            Integer previousShard = SHARD.get();
+            BOOK.set(book);
+            SHARD.set(shard);
+            try {
+                task.run();
+            } finally {
+                restore(BOOK, previousBook);
+                restore(SHARD, previousShard);
+            }
+        };
+    }
+
+    static void setBook(Long bookId) {
+        BOOK.set(bookId);
+    }
+
+    static void clear() {
+        BOOK.remove();
+        SHARD.remove();
+    }
+
+    /** Shared pin on a book; close to release. */
+    static Pin pin(Long bookId) {
+        return new Pin(PINS[stripe(bookId)].readLock());
+    }
+
+    /** Exclusive pin, for moving the book; waits for in-flight work on it to finish. */
+    static Pin pinExclusive(Long bookId) {
+        return new Pin(PINS[stripe(bookId)].writeLock());
+    }
+
+    private static int stripe(Long bookId) {
+        return (int) (ShardRing.mix(bookId) & (PINS.length - 1));
+    }
+
+    private static <T> void restore(ThreadLocal<T> local, T previous) {
+        if (previous == null) local.remove();
+        else local.set(previous);
+    }
+
+    /** A held pin, released by close() on the thread that took it. */
+    static final class Pin implements AutoCloseable {
+        private final Lock lock;
+
+        private Pin(Lock lock) {
+            lock.lock();
+            this.lock = lock;
+        }
+
+        @Override
+        public void close() {
+            lock.unlock();
+        }
+    }
+}
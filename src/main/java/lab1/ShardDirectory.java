@@ -0,0 +1,55 @@
+package lab1;
+
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Where each book lives: its place on the ShardRing unless it is recorded here as being
+ * elsewhere (a book not yet rebalanced after the ring changed). Rebuilt at startup from what
+ * the shards actually hold, so the databases stay the only source of truth.
+ */
+public class ShardDirectory {
+    private final ShardRing ring;
+    private final Map<Long, Integer> displaced = new ConcurrentHashMap<>();
+
+    public ShardDirectory(ShardRing ring) {
+        this.ring = ring;
+    }
+
+    public int shardCount() {
+        return ring.shards();
+    }
+
+    /** Shards to visit for a job over all data: 1 unless sharding is enabled. */
+    static int shardCount(ObjectProvider<ShardDirectory> directory) {
+        ShardDirectory d = directory.getIfAvailable();
+        return d == null ? 1 : d.shardCount();
+    }
+
+    public int shardOf(long bookId) {
+        Integer shard = displaced.get(bookId);
+        return shard != null ? shard : ring.shardFor(bookId);
+    }
+
+    /** Where the ring wants the book, whatever shard holds it now. */
+    public int homeOf(long bookId) {
+        return ring.shardFor(bookId);
+    }
+
+    /** Records that {@code bookId} now lives on {@code shard}. */
+    public void place(long bookId, int shard) {
+        if (shard == ring.shardFor(bookId)) displaced.remove(bookId);
+        else displaced.put(bookId, shard);
+    }
+
+    public void forget(long bookId) {
+        displaced.remove(bookId);
+    }
+
+    /** Books living away from their ring position, and where; a snapshot. */
+    public Map<Long, Integer> displaced() {
+        return Map.copyOf(displaced);
+    }
+}
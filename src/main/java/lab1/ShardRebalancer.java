@@ -0,0 +1,129 @@
+package lab1;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.StringJoiner;
+
+/**
+ * Moves books between shards while the application keeps serving. A move holds the book's
+ * exclusive pin, so requests for that book wait for it (others are unaffected), and copies the
+ * rows as they are: ids, versions, dedup keys and sync positions (with the book's tombstones)
+ * stay the same, so caches, the search index and delta-sync clients remain valid.
+ * <p>
+ * Order: delete on the source (uncommitted), insert on the target and commit, repoint the
+ * directory, commit the source. A failure before the target commits leaves the book where it
+ * was.
+ */
+public class ShardRebalancer {
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate ownTx;
+    private final ShardDirectory directory;
+
+    public ShardRebalancer(DataSource dataSource, PlatformTransactionManager txManager, ShardDirectory directory) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.ownTx = new TransactionTemplate(txManager);
+        this.ownTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.directory = directory;
+    }
+
+    /**
+     * Moves a book to {@code target}; false if it is already there.
+     *
+     * @throws NoSuchElementException if no shard holds the book
+     */
+    @SuppressWarnings("try") // the pin is held for the try block, never referenced in it
+    public boolean move(long bookId, int target) {
+        if (target < 0 || target >= directory.shardCount()) {
+            throw new IllegalArgumentException("no shard " + target);
+        }
+        try (ShardContext.Pin pin = ShardContext.pinExclusive(bookId)) {
+            int source = directory.shardOf(bookId);
+            if (source == target) {
+                if (!exists(bookId, source)) throw new NoSuchElementException("address book " + bookId);
+                return false;
+            }
+            ShardContext.onShard(source, () -> ownTx.execute(status -> {
+                List<Map<String, Object>> book = jdbc.queryForList("select * from address_book where id = ? for update", bookId);
+                if (book.isEmpty()) throw new NoSuchElementException("address book " + bookId);
+                List<Map<String, Object>> buddies = jdbc.queryForList("select * from buddy_info where address_book_id = ?", bookId);
+                List<Map<String, Object>> tombstones = jdbc.queryForList("select * from buddy_tombstone where address_book_id = ?", bookId);
+                jdbc.update("delete from buddy_tombstone where address_book_id = ?", bookId);
+                jdbc.update("delete from buddy_info where address_book_id = ?", bookId);
+                jdbc.update("delete from address_book where id = ?", bookId);
+                ShardContext.onShard(target, () -> ownTx.execute(t -> {
+                    insert("address_book", book);
+                    insert("buddy_info", buddies);
+                    insert("buddy_tombstone", tombstones);
+                    return null;
+                }));
+                directory.place(bookId, target);
+                return null;
+            }));
+            log.info("Moved book {} from shard {} to shard {}", bookId, source, target);
+            return true;
+        }
+    }
+
+    private boolean exists(long bookId, int shard) {
+        return ShardContext.onShard(shard, () ->
+                jdbc.queryForObject("select count(*) from address_book where id = ?", Long.class, bookId) > 0);
+    }
+
+    /** Moves every book that is away from its ring shard back onto it; returns how many moved. */
+    public int rebalance() {
+        int moved = 0;
+        for (Long bookId : directory.displaced().keySet()) {
+            try {
+                if (move(bookId, directory.homeOf(bookId))) moved++;
+            } catch (NoSuchElementException e) {
+                directory.forget(bookId); // deleted meanwhile
+            }
+        }
+        return moved;
+    }
+
+    public int shardCount() {
+        return directory.shardCount();
+    }
+
+    public List<ShardStats> stats() {
+        List<ShardStats> out = new ArrayList<>();
+        for (int s = 0; s < directory.shardCount(); s++) {
+            int shard = s;
+            out.add(ShardContext.onShard(s, () -> new ShardStats(shard,
+                    jdbc.queryForObject("select count(*) from address_book", Long.class),
+                    jdbc.queryForObject("select count(*) from buddy_info", Long.class))));
+        }
+        return out;
+    }
+
+    private void insert(String table, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) return;
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        StringJoiner names = new StringJoiner(", ", "(", ")");
+        StringJoiner marks = new StringJoiner(", ", "(", ")");
+        for (String c : columns) {
+            names.add(c);
+            marks.add("?");
+        }
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Object[] values = new Object[columns.size()];
+            for (int i = 0; i < values.length; i++) values[i] = row.get(columns.get(i));
+            args.add(values);
+        }
+        jdbc.batchUpdate("insert into " + table + " " + names + " values " + marks, args);
+    }
+}
@@ -0,0 +1,53 @@
+package lab1;
+
+import java.util.Arrays;
+
+/**
+ * Consistent-hash ring over shard numbers 0..n-1. Each shard owns {@code virtualNodes} points on
+ * the ring and an id belongs to the first point at or after its hash, so adding a shard moves
+ * only about 1/(n+1) of the books, all of them onto the new shard.
+ */
+public final class ShardRing {
+    private static final long NODE_SALT = 0x9e3779b97f4a7c15L;
+
+    private final int shards;
+    private final long[] points;
+    private final int[] owners;
+
+    public ShardRing(int shards, int virtualNodes) {
+        if (shards < 1) throw new IllegalArgumentException("need at least one shard");
+        this.shards = shards;
+        int n = shards * virtualNodes;
+        long[][] nodes = new long[n][];
+        for (int s = 0; s < shards; s++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                // salted so a node key is never a (positive) book id hashing to the same point
+                nodes[s * virtualNodes + v] = new long[]{mix((((long) s << 32) | v) ^ NODE_SALT), s};
+            }
+        }
+        Arrays.sort(nodes, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[n];
+        this.owners = new int[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = nodes[i][0];
+            owners[i] = (int) nodes[i][1];
+        }
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    public int shardFor(long id) {
+        int i = Arrays.binarySearch(points, mix(id));
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+    /** 64-bit finalizer (SplitMix64): spreads sequential ids evenly over the ring. */
+    static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
@@ -0,0 +1,47 @@
+package lab1;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The application DataSource when sharding is enabled: each connection comes from the pool of
+ * the shard ShardContext names at the moment it is requested. A transaction keeps the
+ * connection it started with, so the context must be set before the transaction begins.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements RoutedPools, AutoCloseable {
+    private final List<HikariDataSource> shards;
+    private final ShardDirectory directory;
+
+    public ShardRoutingDataSource(List<HikariDataSource> shards, ShardDirectory directory) {
+        this.shards = shards;
+        this.directory = directory;
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) targets.put(i, shards.get(i));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.shard();
+        if (shard != null) return shard;
+        Long book = ShardContext.book();
+        return book != null ? directory.shardOf(book) : 0;
+    }
+
+    @Override
+    public List<HikariDataSource> pools() {
+        return shards;
+    }
+
+    @Override
+    public void close() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
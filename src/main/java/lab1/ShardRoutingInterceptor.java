@@ -0,0 +1,54 @@
+package lab1;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Points every /addressbooks/{id}/** request at the shard of book {id} and pins the book for
+ * the duration of the request, so a shard move waits for it. Registered by ShardingConfig.
+ */
+class ShardRoutingInterceptor implements AsyncHandlerInterceptor {
+    private static final String PIN = ShardRoutingInterceptor.class.getName() + ".pin";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> vars = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String id = vars == null ? null : vars.get("id");
+        if (id == null) return true;
+        long bookId;
+        try {
+            bookId = Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return true; // the handler rejects it
+        }
+        request.setAttribute(PIN, ShardContext.pin(bookId));
+        ShardContext.setBook(bookId);
+        return true;
+    }
+
+    // An async request (export) continues on another thread, which gets the context from
+    // the task decorator; this thread lets go here, and again after each async dispatch.
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        release(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        release(request);
+    }
+
+    private static void release(HttpServletRequest request) {
+        Object pin = request.getAttribute(PIN);
+        if (pin != null) {
+            request.removeAttribute(PIN);
+            ((ShardContext.Pin) pin).close();
+        }
+        ShardContext.clear();
+    }
+}
@@ -0,0 +1,4 @@
+package lab1;
+
+/** Row counts of one shard (GET /admin/shards). */
+public record ShardStats(int shard, long books, long buddies) {}
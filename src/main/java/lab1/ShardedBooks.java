@@ -0,0 +1,136 @@
+package lab1;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
+
+/**
+ * The book operations sharding changes: creating a book on the shard its id belongs to, and
+ * finders that are not scoped to one book, which ask every shard in parallel and merge.
+ */
+public class ShardedBooks {
+    private final EntityManager em;
+    private final TransactionTemplate tx;
+    private final JdbcTemplate jdbc;
+    private final ShardDirectory directory;
+    private final AddressBookRepository abRepo;
+    private final BuddyInfoRepository buddyRepo;
+    private final ExecutorService scatter;
+
+    public ShardedBooks(EntityManager em, TransactionTemplate tx, DataSource dataSource, ShardDirectory directory,
+                        AddressBookRepository abRepo, BuddyInfoRepository buddyRepo) {
+        this.em = em;
+        this.tx = tx;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.directory = directory;
+        this.abRepo = abRepo;
+        this.buddyRepo = buddyRepo;
+        this.scatter = Executors.newFixedThreadPool(directory.shardCount(), r -> {
+            Thread t = new Thread(r, "shard-scatter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Creates a book (and any buddies it carries) on its ring shard. The id is taken from
+     * Hibernate's generator first, so the shard is known before the row is written.
+     */
+    public AddressBook create(AddressBook draft) {
+        Long id = tx.execute(status -> {
+            SharedSessionContractImplementor session = em.unwrap(SharedSessionContractImplementor.class);
+            BeforeExecutionGenerator ids = (BeforeExecutionGenerator) session.getEntityPersister(null, draft).getGenerator();
+            return (Long) ids.generate(session, draft, null, EventType.INSERT);
+        });
+        return ShardContext.forBook(id, () -> tx.execute(status -> {
+            jdbc.update("insert into address_book (id, owner, version) values (?, ?, 0)", id, draft.getOwner());
+            AddressBook book = em.find(AddressBook.class, id);
+            for (BuddyInfo b : draft.getBuddies()) book.addBuddy(b.copy());
+            book.size(); // initialized here; the response is written after the transaction
+            return book;
+        }));
+    }
+
+    /** Buddies with this name in any book on any shard, by id. */
+    public List<BuddyInfo> findBuddiesByName(String name) {
+        return gather(() -> list(buddyRepo.findByName(name)), BuddyInfo::getId);
+    }
+
+    /** Books of this owner on any shard, by id; their buddies are not loaded. */
+    public List<AddressBook> findBooksByOwner(String owner) {
+        return gather(() -> abRepo.findAllByOwner(owner), AddressBook::getId);
+    }
+
+    /**
+     * Books with these ids, buddies initialized; each shard is asked, in parallel, only for the
+     * ids it holds. Unknown ids are left out.
+     */
+    public List<AddressBook> findBooksWithBuddies(Collection<Long> ids) {
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long id : ids) byShard.computeIfAbsent(directory.shardOf(id), k -> new ArrayList<>()).add(id);
+        Map<Integer, Supplier<List<AddressBook>>> queries = new HashMap<>();
+        byShard.forEach((shard, part) -> queries.put(shard, () -> abRepo.findAllWithBuddiesById(part)));
+        return scatter(queries);
+    }
+
+    /** AddressBookRepository#findBatchEntriesById on each shard for its own ids, in parallel. */
+    public List<AddressBookBatch.Entry> findBatchEntries(Collection<Long> ids, int buddyLimit) {
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long id : ids) byShard.computeIfAbsent(directory.shardOf(id), k -> new ArrayList<>()).add(id);
+        Map<Integer, Supplier<List<AddressBookBatch.Entry>>> queries = new HashMap<>();
+        byShard.forEach((shard, part) -> queries.put(shard, () -> abRepo.findBatchEntriesById(part, buddyLimit)));
+        return scatter(queries);
+    }
+
+    private <T> List<T> gather(Supplier<List<T>> query, Function<T, Long> id) {
+        Map<Integer, Supplier<List<T>>> queries = new HashMap<>();
+        for (int s = 0; s < directory.shardCount(); s++) queries.put(s, query);
+        List<T> all = scatter(queries);
+        all.sort(Comparator.comparing(id));
+        return all;
+    }
+
+    private <T> List<T> scatter(Map<Integer, Supplier<List<T>>> queries) {
+        List<Future<List<T>>> parts = new ArrayList<>();
+        queries.forEach((shard, query) -> parts.add(scatter.submit(() -> ShardContext.onShard(shard, query))));
+        List<T> all = new ArrayList<>();
+        try {
+            for (Future<List<T>> part : parts) all.addAll(part.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+        return all;
+    }
+
+    private static <T> List<T> list(Iterable<T> rows) {
+        return StreamSupport.stream(rows.spliterator(), false).toList();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scatter.shutdownNow();
+    }
+}
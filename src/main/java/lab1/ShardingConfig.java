@@ -0,0 +1,117 @@
+package lab1;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Horizontal sharding by book id (addressbook.shards.*), off by default. Each URL in
+ * addressbook.shards.urls is one shard with its own pool; books are spread over them by a
+ * ShardRing and found through the ShardDirectory. A book's rows (the book and its buddies)
+ * always live together on one shard.
+ * <p>
+ * Requests under /addressbooks/{id} run on the book's shard; POST /addressbooks creates the book
+ * on its shard (ShardedBooks); global jobs (search index, duplicate scan) visit every shard.
+ * Needs spring.jpa.open-in-view=false, so each transaction picks its shard afresh, and cannot
+ * be combined with read replicas.
+ */
+@Configuration
+@ConditionalOnProperty(name = "addressbook.shards.enabled", havingValue = "true")
+public class ShardingConfig implements WebMvcConfigurer {
+
+    @Bean
+    public ShardDirectory shardDirectory(@Value("${addressbook.shards.urls}") List<String> urls,
+                                         @Value("${addressbook.shards.virtual-nodes:64}") int virtualNodes) {
+        if (urls.isEmpty()) throw new IllegalStateException("addressbook.shards.urls is empty");
+        return new ShardDirectory(new ShardRing(urls.size(), virtualNodes));
+    }
+
+    @Bean(destroyMethod = "close")
+    public ShardRoutingDataSource dataSource(DataSourceProperties properties,
+                                             MeterRegistry registry,
+                                             ShardDirectory directory,
+                                             @Value("${addressbook.shards.urls}") List<String> urls,
+                                             @Value("${addressbook.shards.pool-size:10}") int poolSize,
+                                             @Value("${spring.jpa.open-in-view:true}") boolean openInView,
+                                             @Value("${addressbook.replicas.enabled:false}") boolean replicas) {
+        if (openInView) {
+            throw new IllegalStateException("addressbook.shards.enabled requires spring.jpa.open-in-view=false");
+        }
+        if (replicas) throw new IllegalStateException("sharding and read replicas cannot both be enabled");
+        List<HikariDataSource> pools = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource pool = DataSourceBuilder.create().type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(urls.get(i))
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            pool.setPoolName("shard-" + i);
+            pool.setMaximumPoolSize(poolSize);
+            pool.setMetricRegistry(registry);
+            pools.add(pool);
+        }
+        return new ShardRoutingDataSource(pools, directory);
+    }
+
+    @Bean
+    public ShardBootstrap shardBootstrap() {
+        return new ShardBootstrap();
+    }
+
+    // Shard sequences increment by shards * 50 while the mapping allocates 50 at a time
+    @Bean
+    public HibernatePropertiesCustomizer shardHibernateProperties(ShardBootstrap bootstrap) {
+        return props -> {
+            props.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(bootstrap));
+            props.put("hibernate.id.sequence.increment_size_mismatch_strategy", "NONE");
+        };
+    }
+
+    @Bean
+    public SmartInitializingSingleton shardStartup(ShardBootstrap bootstrap, DataSource dataSource, ShardDirectory directory) {
+        return () -> bootstrap.run(dataSource, directory);
+    }
+
+    @Bean
+    public ShardedBooks shardedBooks(EntityManager em, TransactionTemplate tx, DataSource dataSource,
+                                     ShardDirectory directory, AddressBookRepository abRepo,
+                                     BuddyInfoRepository buddyRepo) {
+        return new ShardedBooks(em, tx, dataSource, directory, abRepo, buddyRepo);
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(DataSource dataSource, PlatformTransactionManager txManager,
+                                           ShardDirectory directory) {
+        return new ShardRebalancer(dataSource, txManager, directory);
+    }
+
+    // Async work (exports) continues on the shard of the request that started it
+    @Bean
+    public TaskDecorator shardContextTaskDecorator() {
+        return ShardContext::propagate;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ShardRoutingInterceptor()).addPathPatterns("/addressbooks/**");
+    }
+}
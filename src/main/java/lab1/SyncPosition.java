@@ -0,0 +1,8 @@
+package lab1;
+
+/**
+ * Where a book stands for delta sync: {@code seq} is its latest change, {@code floor} the
+ * highest change whose tombstones were compacted. A client at a position below the floor may
+ * have missed a removal and must sync in full.
+ */
+public record SyncPosition(long seq, long floor) {}
@@ -0,0 +1,89 @@
+package lab1;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Purges buddy tombstones older than addressbook.sync.tombstone-retention, every
+ * compaction-interval. Each affected book's sync floor is raised to the newest purged change,
+ * so a client still behind it gets a full sync instead of a delta missing those removals.
+ */
+@Component
+public class TombstoneCompactor {
+    private static final Logger log = LoggerFactory.getLogger(TombstoneCompactor.class);
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final int shards;
+    private final long retentionMillis;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tombstone-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public TombstoneCompactor(DataSource dataSource,
+                              TransactionTemplate tx,
+                              ObjectProvider<ShardDirectory> shards,
+                              @Value("${addressbook.sync.tombstone-retention:30d}") Duration retention,
+                              @Value("${addressbook.sync.compaction-interval:1h}") Duration interval) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.tx = tx;
+        this.shards = ShardDirectory.shardCount(shards);
+        this.retentionMillis = retention.toMillis();
+        this.intervalMillis = interval.toMillis();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                log.warn("Tombstone compaction failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Purges tombstones past retention on every shard; returns how many. */
+    public int compact() {
+        return compact(System.currentTimeMillis() - retentionMillis);
+    }
+
+    /** Purges tombstones written before {@code beforeMillis}; one transaction per shard. */
+    int compact(long beforeMillis) {
+        int purged = 0;
+        for (int s = 0; s < shards; s++) {
+            purged += ShardContext.onShard(s, () -> tx.execute(status -> {
+                jdbc.update("""
+                        update address_book b set sync_floor =
+                            (select max(t.change_seq) from buddy_tombstone t where t.address_book_id = b.id and t.deleted_millis < ?)
+                        where exists (select 1 from buddy_tombstone t where t.address_book_id = b.id and t.deleted_millis < ?)""",
+                        beforeMillis, beforeMillis);
+                return jdbc.update("delete from buddy_tombstone where deleted_millis < ?", beforeMillis);
+            }));
+        }
+        if (purged > 0) log.info("Compacted {} buddy tombstones", purged);
+        return purged;
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+}
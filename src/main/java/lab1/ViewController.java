@@ -1,21 +1,80 @@
 package lab1;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.List;
 
 @Controller
 public class ViewController {
+    static final int DEFAULT_VIEW_PAGE_SIZE = 50;
+    static final int MAX_VIEW_PAGE_SIZE = 500;
+
     private final AddressBookRepository abRepo;
+    private final BuddyInfoRepository buddyRepo;
+    private final AddressBookMetrics metrics;
+    private final ViewFragmentCache fragments;
+    private final ITemplateEngine templateEngine;
 
-    public ViewController(AddressBookRepository abRepo) { this.abRepo = abRepo; }
+    public ViewController(AddressBookRepository abRepo, BuddyInfoRepository buddyRepo,
+                          AddressBookMetrics metrics, ViewFragmentCache fragments,
+                          ITemplateEngine templateEngine) {
+        this.abRepo = abRepo;
+        this.buddyRepo = buddyRepo;
+        this.metrics = metrics;
+        this.fragments = fragments;
+        this.templateEngine = templateEngine;
+    }
 
-    // Visit: http://localhost:8080/addressbooks/1/view
+    // Visit: http://localhost:8080/addressbooks/1/view?page=0&size=50
+    // One page of buddies plus a pager. The buddy table is rendered once per book version and
+    // page, then served from ViewFragmentCache until the book changes.
+    // Same version-based ETag as GET /addressbooks/{id}: 304 without loading the book
     @GetMapping("/addressbooks/{id}/view")
-    public String viewBook(@PathVariable Long id, Model model) {
+    @Transactional(readOnly = true)
+    public String viewBook(@PathVariable Long id,
+                           @RequestParam(defaultValue = "0") int page,
+                           @RequestParam(defaultValue = "" + DEFAULT_VIEW_PAGE_SIZE) int size,
+                           Model model, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(AddressBookController.etag(abRepo.findVersionById(id).orElseThrow()))) {
+            return null;
+        }
         AddressBook book = abRepo.findById(id).orElseThrow();
+        long version = book.getVersion() == null ? 0 : book.getVersion();
+        if (book.getVersion() != null) request.checkNotModified(AddressBookController.etag(version));
+
+        int pageNo = Math.max(0, page);
+        int pageSize = Math.max(1, Math.min(size, MAX_VIEW_PAGE_SIZE));
+        ViewFragmentCache.Fragment buddies = fragments.get(ViewFragmentCache.key(id, version, pageNo, pageSize),
+                () -> renderBuddies(id, pageNo, pageSize));
+        metrics.recordBuddyCount(buddies.buddyCount());
         model.addAttribute("addressBook", book);
+        model.addAttribute("buddyCount", buddies.buddyCount());
+        model.addAttribute("buddiesHtml", buddies.html());
         return "addressbook"; // looks for templates/addressbook.html
     }
+
+    // A count and one page query; the book's buddies collection is never initialized
+    private ViewFragmentCache.Fragment renderBuddies(Long bookId, int page, int size) {
+        long count = buddyRepo.countByAddressBookId(bookId);
+        List<BuddyInfo> rows = buddyRepo.findByAddressBookId(bookId, PageRequest.of(page, size, Sort.by("id")));
+        int pages = (int) Math.max(1, (count + size - 1) / size);
+        Context ctx = new Context();
+        ctx.setVariable("buddies", rows);
+        ctx.setVariable("page", page);
+        ctx.setVariable("size", size);
+        ctx.setVariable("pages", pages);
+        return new ViewFragmentCache.Fragment(templateEngine.process("addressbook-buddies", ctx), count);
+    }
 }
@@ -0,0 +1,54 @@
+package lab1;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * LRU cache of rendered HTML fragments for the address book view. Keys carry the book version,
+ * so a change to the book simply stops hitting its old entries, which then age out; nothing
+ * has to be evicted on write. Two requests missing the same key at once may both render.
+ */
+@Component
+public class ViewFragmentCache {
+    private final Map<String, Fragment> fragments;
+
+    public ViewFragmentCache(@Value("${addressbook.view.fragment-cache-size:256}") int maxEntries) {
+        this.fragments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Fragment> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** Key of one page of a book at one version. */
+    static String key(Long bookId, long version, int page, int size) {
+        return bookId + ":" + version + ":" + page + ":" + size;
+    }
+
+    /** The cached fragment for {@code key}, rendering and caching it on a miss. */
+    public Fragment get(String key, Supplier<Fragment> render) {
+        synchronized (fragments) {
+            Fragment hit = fragments.get(key);
+            if (hit != null) return hit;
+        }
+        Fragment rendered = render.get();
+        synchronized (fragments) {
+            fragments.put(key, rendered);
+        }
+        return rendered;
+    }
+
+    public int size() {
+        synchronized (fragments) {
+            return fragments.size();
+        }
+    }
+
+    /** Rendered HTML plus the buddy count it was rendered from, so hits can still report it. */
+    public record Fragment(String html, long buddyCount) {}
+}
@@ -0,0 +1,63 @@
+package lab1;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes the read endpoints' records with one ObjectWriter per type, resolved at startup.
+ * The general Jackson converter builds a writer and looks up the root serializer for every
+ * response; these types are fixed, so that work is done once. Picked up ahead of the
+ * default converters; anything else (and every request body) still goes through those.
+ */
+@Component
+public class ViewJsonConverter extends AbstractHttpMessageConverter<Object> {
+    private final Map<Class<?>, ObjectWriter> writers;
+
+    public ViewJsonConverter(ObjectMapper json) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.writers = Map.of(
+                AddressBookView.class, writer(json, AddressBookView.class),
+                AddressBookBatch.class, writer(json, AddressBookBatch.class),
+                AddressBookSummary.class, writer(json, AddressBookSummary.class),
+                BuddyView.class, writer(json, BuddyView.class),
+                BuddyPage.class, writer(json, BuddyPage.class),
+                BuddySync.class, writer(json, BuddySync.class));
+    }
+
+    // the response stream belongs to the servlet container; flush it, never close it
+    private static ObjectWriter writer(ObjectMapper json, Class<?> type) {
+        return json.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return writers.containsKey(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("read-only converter", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+        writers.get(value.getClass()).writeValue(outputMessage.getBody(), value);
+        outputMessage.getBody().flush();
+    }
+}
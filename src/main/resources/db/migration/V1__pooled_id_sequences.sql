@@ -0,0 +1,14 @@
+-- Moves tables created with IDENTITY ids over to the pooled sequences used by
+-- AddressBook and BuddyInfo. Only needed for databases created before the switch;
+-- fresh schemas get the sequences from Hibernate.
+--
+-- The pooled optimizer treats each sequence value as the top of a block of 50 ids,
+-- so the sequence restarts at MAX(id) + 50 to keep the first block above existing rows.
+
+ALTER TABLE address_book ALTER COLUMN id DROP IDENTITY;
+CREATE SEQUENCE IF NOT EXISTS address_book_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE address_book_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM address_book);
+
+ALTER TABLE buddy_info ALTER COLUMN id DROP IDENTITY;
+CREATE SEQUENCE IF NOT EXISTS buddy_info_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE buddy_info_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM buddy_info);
@@ -0,0 +1,2 @@
+-- Composite index for keyset paging of a book's buddies (see BuddyInfo @Table indexes).
+CREATE INDEX IF NOT EXISTS idx_buddy_info_book_id ON buddy_info (address_book_id, id);
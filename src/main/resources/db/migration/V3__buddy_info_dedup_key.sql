@@ -0,0 +1,21 @@
+-- Business-key dedup for buddies (see BuddyInfo.dedupKey): backfills dedup_key with the
+-- same normalization as the Java code, drops existing duplicates within a book (keeping
+-- the oldest row), then enforces one buddy per key per book.
+
+ALTER TABLE buddy_info ADD COLUMN IF NOT EXISTS dedup_key VARCHAR(1024);
+
+UPDATE buddy_info SET dedup_key =
+        LOWER(REGEXP_REPLACE(TRIM(name), '\s+', ' ')) || CHAR(31)
+        || CASE WHEN REGEXP_REPLACE(phone, '\D', '') = ''
+                THEN LOWER(REGEXP_REPLACE(TRIM(phone), '\s+', ' '))
+                ELSE REGEXP_REPLACE(phone, '\D', '') END || CHAR(31)
+        || LOWER(REGEXP_REPLACE(TRIM(address), '\s+', ' '));
+
+DELETE FROM buddy_info b
+WHERE b.address_book_id IS NOT NULL
+  AND EXISTS (SELECT 1 FROM buddy_info o
+              WHERE o.address_book_id = b.address_book_id
+                AND o.dedup_key = b.dedup_key
+                AND o.id < b.id);
+
+ALTER TABLE buddy_info ADD CONSTRAINT IF NOT EXISTS uk_buddy_info_book_dedup UNIQUE (address_book_id, dedup_key);
@@ -0,0 +1,5 @@
+-- Secondary indexes for the repository finders (see @Table indexes on BuddyInfo and AddressBook).
+-- findByName is served by the leading column of the (name, address) index, and the
+-- address_book_id foreign key by the leading column of idx_buddy_info_book_id (V2).
+CREATE INDEX IF NOT EXISTS idx_buddy_info_name_address ON buddy_info (name, address);
+CREATE INDEX IF NOT EXISTS idx_address_book_owner ON address_book (owner);
@@ -0,0 +1,2 @@
+-- Optimistic version for AddressBook; drives ETags on the book's read endpoints.
+ALTER TABLE address_book ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,6 @@
+-- Heartbeat for read-replica lag checks (see ReplicaPool): the application writes the current
+-- time here on the primary and reads it back from each replica. Created on demand as well.
+CREATE TABLE IF NOT EXISTS replica_heartbeat (
+    id          INT PRIMARY KEY,
+    beat_millis BIGINT NOT NULL
+);
@@ -0,0 +1,17 @@
+-- Delta sync (GET /addressbooks/{id}/sync): per-book change sequence, per-buddy stamps and
+-- tombstones for deleted buddies (see ChangeSequenceListener, TombstoneCompactor).
+-- Existing buddies get stamp 0, so any client position above 0 already includes them.
+ALTER TABLE address_book ADD COLUMN IF NOT EXISTS change_seq BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE address_book ADD COLUMN IF NOT EXISTS sync_floor BIGINT DEFAULT 0 NOT NULL;
+
+ALTER TABLE buddy_info ADD COLUMN IF NOT EXISTS change_seq BIGINT;
+UPDATE buddy_info SET change_seq = 0 WHERE change_seq IS NULL;
+CREATE INDEX IF NOT EXISTS idx_buddy_info_book_change ON buddy_info (address_book_id, change_seq);
+
+CREATE TABLE IF NOT EXISTS buddy_tombstone (
+    buddy_id        BIGINT PRIMARY KEY,
+    address_book_id BIGINT NOT NULL,
+    change_seq      BIGINT NOT NULL,
+    deleted_millis  BIGINT NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_buddy_tombstone_book_change ON buddy_tombstone (address_book_id, change_seq);
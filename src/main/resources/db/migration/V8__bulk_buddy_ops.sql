@@ -0,0 +1,4 @@
+-- Bulk buddy moves (POST /addressbooks/{id}/buddies/bulk-move): a moved buddy leaves a tombstone
+-- in every book it leaves, so tombstones are keyed by (book, buddy) instead of buddy alone.
+ALTER TABLE buddy_tombstone DROP PRIMARY KEY;
+ALTER TABLE buddy_tombstone ADD PRIMARY KEY (address_book_id, buddy_id);
@@ -0,0 +1,38 @@
+package lab1;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times in-memory bulk add of 10k and 100k distinct buddies to one AddressBook.
+ * Disabled by default; run with: mvn test -Dbenchmarks=true -Dtest=AddressBookBulkAddBenchmarkTest
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class AddressBookBulkAddBenchmarkTest {
+
+    @Test
+    void bulk_add() {
+        addAll(10_000); // warm-up
+        for (int n : new int[]{10_000, 100_000}) {
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < 3; run++) best = Math.min(best, addAll(n));
+            System.out.printf("bulk addBuddy %,7d buddies: %,8.1f ms%n", n, best / 1e6);
+        }
+    }
+
+    private static long addAll(int n) {
+        List<BuddyInfo> buddies = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) buddies.add(new BuddyInfo("name" + i, "555-" + i, i + " Bench St"));
+        AddressBook book = new AddressBook("bench");
+        long start = System.nanoTime();
+        for (BuddyInfo b : buddies) book.addBuddy(b);
+        long elapsed = System.nanoTime() - start;
+        if (book.size() != n) throw new AssertionError("expected " + n + " buddies, got " + book.size());
+        return elapsed;
+    }
+}
@@ -6,6 +6,7 @@ import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -14,6 +15,7 @@ import java.util.Optional;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -33,6 +35,18 @@ class AddressBookControllerTest {
     @MockBean
     BuddyInfoRepository buddyRepo;
 
+    @MockBean
+    AddressBookCache cache;
+
+    @MockBean
+    AddressBookMetrics metrics;
+
+    @MockBean
+    BuddySearchIndex searchIndex;
+
+    @MockBean
+    BuddyBulkService bulk;
+
     // ---------- CREATE /addressbooks (POST) ----------
     @Test
     void createAddressBook_returns201_withBody() throws Exception {
@@ -75,6 +89,31 @@ class AddressBookControllerTest {
                 .andExpect(jsonPath("$.buddies[*].phone", containsInAnyOrder("123", "555")));
     }
 
+    @Test
+    void getAddressBook_carriesVersionETag_and_answers304_fromVersionOnly() throws Exception {
+        AddressBook ab = new AddressBook("Usman");
+        setId(ab, 1L);
+        setVersion(ab, 7L);
+        when(abRepo.findById(1L)).thenReturn(Optional.of(ab));
+        when(abRepo.findVersionById(1L)).thenReturn(Optional.of(7L));
+
+        mvc.perform(get("/addressbooks/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v7\""));
+
+        clearInvocations(abRepo);
+        mvc.perform(get("/addressbooks/1").header("If-None-Match", "\"v7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(abRepo).findVersionById(1L);
+        verify(abRepo, never()).findById(any());
+
+        mvc.perform(get("/addressbooks/1").header("If-None-Match", "\"v6\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v7\""))
+                .andExpect(jsonPath("$.owner", is("Usman")));
+    }
+
     @Test
     void getAddressBook_notFound_mapsTo404() throws Exception {
         when(abRepo.findById(99L)).thenReturn(Optional.empty());
@@ -84,36 +123,178 @@ class AddressBookControllerTest {
                 .andExpect(content().string(containsString("Not found")));
     }
 
+    // ---------- GET /addressbooks/{id}?view=summary ----------
+    @Test
+    void getAddressBook_summary_returnsOwnerAndCount_withoutBuddies() throws Exception {
+        when(abRepo.findSummaryById(1L)).thenReturn(Optional.of(new AddressBookSummary(1L, "Usman", 250_000L)));
+
+        mvc.perform(get("/addressbooks/1").param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.owner", is("Usman")))
+                .andExpect(jsonPath("$.buddyCount", is(250_000)))
+                .andExpect(jsonPath("$.buddies").doesNotExist());
+    }
+
+    // ---------- POST /addressbooks/batch-get ----------
+    @Test
+    void batchGet_keepsRequestOrder_andMarksUnknownIds() throws Exception {
+        AddressBook one = new AddressBook("One");
+        setId(one, 1L);
+        one.addBuddy(cloneWithId(new BuddyInfo("A", "1"), 10L));
+        one.addBuddy(cloneWithId(new BuddyInfo("B", "2"), 11L));
+        AddressBook two = new AddressBook("Two");
+        setId(two, 2L);
+        when(abRepo.findAllWithBuddiesById(any())).thenReturn(List.of(one, two));
+
+        mvc.perform(post("/addressbooks/batch-get")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[2, 99, 1]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[*].id", contains(2, 99, 1)))
+                .andExpect(jsonPath("$.results[1].found", is(false)))
+                .andExpect(jsonPath("$.results[1].book").doesNotExist())
+                .andExpect(jsonPath("$.results[2].book.owner", is("One")))
+                .andExpect(jsonPath("$.results[2].book.buddies", hasSize(2)))
+                .andExpect(jsonPath("$.results[2].buddyCount", is(2)));
+
+        verify(abRepo).findAllWithBuddiesById(java.util.Set.of(2L, 99L, 1L)); // one lookup for all ids
+    }
+
+    @Test
+    void batchGet_withBuddyLimit_cutsInTheQuery_notByLoadingBooks() throws Exception {
+        AddressBook one = new AddressBook("One");
+        setId(one, 1L);
+        List<BatchBuddyRow> rows = List.of(new BatchBuddyRow(1L, 10L, "A", "1", "N/A", 2L));
+        when(abRepo.findBatchEntriesById(any(), eq(1)))
+                .thenReturn(List.of(AddressBookBatch.Entry.of(one, rows, 1)));
+
+        mvc.perform(post("/addressbooks/batch-get").param("buddyLimit", "1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 99]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[*].id", contains(1, 99)))
+                .andExpect(jsonPath("$.results[0].book.buddies", hasSize(1)))
+                .andExpect(jsonPath("$.results[0].book.buddies[0].name", is("A")))
+                .andExpect(jsonPath("$.results[0].buddyCount", is(2)))
+                .andExpect(jsonPath("$.results[1].found", is(false)));
+
+        verify(abRepo).findBatchEntriesById(java.util.Set.of(1L, 99L), 1);
+        verify(abRepo, never()).findAllWithBuddiesById(any());
+    }
+
+    // ---------- GET /addressbooks/{id}/buddies?after=&limit= ----------
+    @Test
+    void listBuddies_returnsPage_withNextCursor() throws Exception {
+        when(buddyRepo.findViewsByAddressBookIdAndIdGreaterThanOrderByIdAsc(1L, 10L, Limit.of(3)))
+                .thenReturn(List.of(
+                        new BuddyView(11L, "A", "1", "N/A"),
+                        new BuddyView(12L, "B", "2", "N/A"),
+                        new BuddyView(13L, "C", "3", "N/A")));
+
+        mvc.perform(get("/addressbooks/1/buddies").param("after", "10").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.buddies[*].name", contains("A", "B")))
+                .andExpect(jsonPath("$.next", is(12)));
+    }
+
+    @Test
+    void listBuddies_lastPage_hasNoCursor() throws Exception {
+        when(buddyRepo.findViewsByAddressBookIdAndIdGreaterThanOrderByIdAsc(eq(1L), eq(0L), any(Limit.class)))
+                .thenReturn(List.of(new BuddyView(11L, "A", "1", "N/A")));
+
+        mvc.perform(get("/addressbooks/1/buddies"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.buddies", hasSize(1)))
+                .andExpect(jsonPath("$.next").value(nullValue()));
+    }
+
+    @Test
+    void listBuddies_unknownBook_mapsTo404() throws Exception {
+        when(abRepo.existsById(99L)).thenReturn(false);
+
+        mvc.perform(get("/addressbooks/99/buddies"))
+                .andExpect(status().isNotFound());
+    }
+
     // ---------- POST /addressbooks/{id}/buddies (single) ----------
     @Test
-    void addBuddy_toAddressBook_returns200_andPersists() throws Exception {
-        AddressBook ab = new AddressBook("Owner");
-        setId(ab, 1L);
-        when(abRepo.findById(1L)).thenReturn(Optional.of(ab));
+    void addBuddy_toAddressBook_returns201_withBuddyAndLocation() throws Exception {
+        AddressBook ref = new AddressBook("Owner");
+        setId(ref, 1L);
+        when(abRepo.findAndBumpVersionById(1L)).thenReturn(Optional.of(ref));
 
         BuddyInfo req = new BuddyInfo("John", "123", "123 crossroads");
-        AddressBook saved = new AddressBook("Owner");
-        setId(saved, 1L);
-        // after save, it should contain the buddy
-        saved.addBuddy(cloneWithId(new BuddyInfo("John", "123", "123 crossroads"), 10L));
-
-        ArgumentCaptor<AddressBook> abCaptor = ArgumentCaptor.forClass(AddressBook.class);
-        when(abRepo.save(abCaptor.capture())).thenReturn(saved);
+        ArgumentCaptor<BuddyInfo> buddyCaptor = ArgumentCaptor.forClass(BuddyInfo.class);
+        when(buddyRepo.save(buddyCaptor.capture()))
+                .thenAnswer(inv -> { BuddyInfo b = inv.getArgument(0); setId(b, 10L); return b; });
 
         mvc.perform(post("/addressbooks/1/buddies")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", org.hamcrest.Matchers.endsWith("/addressbooks/1/buddies/10")))
+                .andExpect(jsonPath("$.id", is(10)))
+                .andExpect(jsonPath("$.name", is("John")))
+                .andExpect(jsonPath("$.phone", is("123")));
+
+        // Buddy is linked to the (version-bumped) book and inserted directly; the book is never saved
+        org.junit.jupiter.api.Assertions.assertSame(ref, buddyCaptor.getValue().getAddressBook());
+        verify(abRepo, never()).findById(any());
+        verify(abRepo, never()).save(any());
+        verify(cache).evictBook(1L);
+    }
+
+    @Test
+    void addBuddy_unknownBook_mapsTo404() throws Exception {
+        when(abRepo.findAndBumpVersionById(99L)).thenReturn(Optional.empty());
+
+        mvc.perform(post("/addressbooks/99/buddies")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BuddyInfo("John", "123"))))
+                .andExpect(status().isNotFound());
+
+        verify(buddyRepo, never()).save(any());
+    }
+
+    @Test
+    void addBuddy_duplicate_rejectPolicy_mapsTo409() throws Exception {
+        when(buddyRepo.findByAddressBookIdAndDedupKey(eq(1L), any()))
+                .thenReturn(Optional.of(cloneWithId(new BuddyInfo("John", "123"), 10L)));
+
+        mvc.perform(post("/addressbooks/1/buddies").param("onDuplicate", "reject")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BuddyInfo("john", "1-2-3"))))
+                .andExpect(status().isConflict());
+
+        verify(buddyRepo, never()).save(any());
+    }
+
+    @Test
+    void addBuddy_duplicate_defaultSkip_returns200_withExisting() throws Exception {
+        when(buddyRepo.findByAddressBookIdAndDedupKey(eq(1L), any()))
+                .thenReturn(Optional.of(cloneWithId(new BuddyInfo("John", "123"), 10L)));
+
+        mvc.perform(post("/addressbooks/1/buddies")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BuddyInfo("john", "1-2-3"))))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.id", is(1)))
-                .andExpect(jsonPath("$.buddies", hasSize(1)))
-                .andExpect(jsonPath("$.buddies[0].name", is("John")))
-                .andExpect(jsonPath("$.buddies[0].phone", is("123")));
+                .andExpect(jsonPath("$.id", is(10)))
+                .andExpect(jsonPath("$.name", is("John")));
+
+        verify(buddyRepo, never()).save(any());
+        verify(abRepo, never()).findAndBumpVersionById(any()); // nothing changed, version stays
+    }
+
+    // ---------- GET /addressbooks/{id}/buddies/{buddyId} ----------
+    @Test
+    void getBuddy_returnsBuddyOfThatBook() throws Exception {
+        when(buddyRepo.findViewByIdAndAddressBookId(10L, 1L))
+                .thenReturn(Optional.of(new BuddyView(10L, "John", "123", "N/A")));
 
-        // Verify controller linked buddy to book before saving
-        AddressBook toSave = abCaptor.getValue();
-        // there should be exactly one buddy linked to that instance
-        org.junit.jupiter.api.Assertions.assertEquals(1, toSave.getBuddies().size());
-        org.junit.jupiter.api.Assertions.assertSame(toSave, toSave.getBuddies().get(0).getAddressBook());
+        mvc.perform(get("/addressbooks/1/buddies/10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("John")));
     }
 
     // ---------- POST /addressbooks/{id}/buddies/bulk ----------
@@ -121,7 +302,7 @@ class AddressBookControllerTest {
     void bulkAddBuddies_returns200_withAllAdded() throws Exception {
         AddressBook ab = new AddressBook("Owner");
         setId(ab, 1L);
-        when(abRepo.findById(1L)).thenReturn(Optional.of(ab));
+        when(abRepo.findAndBumpVersionById(1L)).thenReturn(Optional.of(ab));
 
         List<BuddyInfo> payload = List.of(
                 new BuddyInfo("A", "1"),
@@ -146,34 +327,72 @@ class AddressBookControllerTest {
                 .andExpect(jsonPath("$.buddies[*].name", containsInAnyOrder("A", "B", "C")));
     }
 
-    // ---------- DELETE /addressbooks/{id}/buddies/{buddyId} ----------
     @Test
-    void removeBuddy_returns204_andSaves() throws Exception {
+    void bulkAddBuddies_skipsDuplicates_byDefault_and_rejectsOnRequest() throws Exception {
         AddressBook ab = new AddressBook("Owner");
         setId(ab, 1L);
-        BuddyInfo john = cloneWithId(new BuddyInfo("John", "123"), 10L);
-        ab.addBuddy(john);
+        when(abRepo.findAndBumpVersionById(1L)).thenReturn(Optional.of(ab));
+        when(abRepo.save(any(AddressBook.class))).thenAnswer(inv -> inv.getArgument(0));
 
-        when(abRepo.findById(1L)).thenReturn(Optional.of(ab));
+        List<BuddyInfo> payload = List.of(new BuddyInfo("A", "1"), new BuddyInfo("a", "1"));
+
+        mvc.perform(post("/addressbooks/1/buddies/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.buddies", hasSize(1)));
+
+        mvc.perform(post("/addressbooks/1/buddies/bulk").param("onDuplicate", "reject")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isConflict());
+    }
+
+    // ---------- DELETE /addressbooks/{id}/buddies/{buddyId} ----------
+    @Test
+    void removeBuddy_returns204_deletesJustThatBuddy_andEvictsCachedCollection() throws Exception {
+        BuddyInfo john = cloneWithId(new BuddyInfo("John", "123"), 10L);
+        when(buddyRepo.findByIdAndAddressBookId(10L, 1L)).thenReturn(Optional.of(john));
 
         mvc.perform(delete("/addressbooks/1/buddies/10"))
                 .andExpect(status().isNoContent());
 
-        // ensure save called with buddy removed
-        verify(abRepo).save(argThat(book ->
-                book.getBuddies().stream().noneMatch(b -> Long.valueOf(10L).equals(b.getId()))
-        ));
+        verify(buddyRepo).delete(john);
+        verify(abRepo).findAndBumpVersionById(1L);
+        verify(cache).evictBook(1L);
+        verify(abRepo, never()).findById(any());
+        verify(abRepo, never()).save(any());
+    }
+
+    @Test
+    void removeBuddy_unknownBook_mapsTo404() throws Exception {
+        when(buddyRepo.findByIdAndAddressBookId(10L, 99L)).thenReturn(Optional.empty());
+        when(abRepo.existsById(99L)).thenReturn(false);
+
+        mvc.perform(delete("/addressbooks/99/buddies/10"))
+                .andExpect(status().isNotFound());
     }
 
     // ---------- DELETE /addressbooks/{id} ----------
     @Test
     void deleteBook_returns204() throws Exception {
-        doNothing().when(abRepo).deleteById(1L);
-
         mvc.perform(delete("/addressbooks/1"))
                 .andExpect(status().isNoContent());
 
-        verify(abRepo).deleteById(1L);
+        verify(bulk).deleteBook(1L);
+    }
+
+    // ---------- POST /addressbooks/{id}/buddies/bulk-move ----------
+    @Test
+    void bulkMove_toSameBookOrWithUpsert_returns400() throws Exception {
+        mvc.perform(post("/addressbooks/1/buddies/bulk-move").param("to", "1")
+                        .contentType(MediaType.APPLICATION_JSON).content("[10]"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/addressbooks/1/buddies/bulk-move").param("to", "2").param("onDuplicate", "upsert")
+                        .contentType(MediaType.APPLICATION_JSON).content("[10]"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(bulk);
     }
 
     // ===== helpers for id assignment in tests =====
@@ -187,6 +406,16 @@ class AddressBookControllerTest {
         }
     }
 
+    private static void setVersion(AddressBook ab, Long version) {
+        try {
+            var f = AddressBook.class.getDeclaredField("version");
+            f.setAccessible(true);
+            f.set(ab, version);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private static void setId(BuddyInfo b, Long id) {
         try {
             var f = BuddyInfo.class.getDeclaredField("id");
@@ -1,23 +1,46 @@
 package lab1;
 
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.http.*;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 class AddressBookIntegrationTest {
 
     @LocalServerPort
     int port;
 
+    @LocalManagementPort
+    int managementPort;
+
     @Autowired
     TestRestTemplate rest;
 
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @RegisterExtension
+    QueryBudgetExtension queries = new QueryBudgetExtension();
+
     private String base() {
         return "http://localhost:" + port + "/addressbooks";
     }
@@ -39,11 +62,12 @@ class AddressBookIntegrationTest {
         return resp.getBody();
     }
 
-    private AddressBook addBuddy(Long bookId, String name, String phone, String address) {
+    private BuddyInfo addBuddy(Long bookId, String name, String phone, String address) {
         BuddyInfo buddy = new BuddyInfo(name, phone, address);
-        ResponseEntity<AddressBook> resp =
-                rest.postForEntity(base() + "/" + bookId + "/buddies", buddy, AddressBook.class);
-        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        ResponseEntity<BuddyInfo> resp =
+                rest.postForEntity(base() + "/" + bookId + "/buddies", buddy, BuddyInfo.class);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        assertNotNull(resp.getHeaders().getLocation());
         return resp.getBody();
     }
 
@@ -62,11 +86,9 @@ class AddressBookIntegrationTest {
     @Test
     void add_buddy_then_list() {
         AddressBook book = createBook("Usman");
-        AddressBook afterAdd = addBuddy(book.getId(), "John", "123", "Ottawa");
+        BuddyInfo b = addBuddy(book.getId(), "John", "123", "Ottawa");
 
-        // The controller returns the saved book; should now have 1 buddy
-        assertEquals(1, afterAdd.getBuddies().size());
-        BuddyInfo b = afterAdd.getBuddies().get(0);
+        // The controller returns just the created buddy
         assertEquals("John", b.getName());
         assertEquals("123", b.getPhone());
         assertEquals("Ottawa", b.getAddress());
@@ -113,6 +135,107 @@ class AddressBookIntegrationTest {
         assertEquals("Alice", fetched.getBuddies().get(0).getName());
     }
 
+    @Test
+    void single_add_and_remove_never_initialize_buddies_collection() {
+        AddressBook book = createBook("Big");
+        BuddyInfo keep = addBuddy(book.getId(), "Keep", "1", "Here");
+
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+
+        BuddyInfo added = addBuddy(book.getId(), "Temp", "2", "There");
+        ResponseEntity<BuddyInfo> byLocation = rest.getForEntity(
+                base() + "/" + book.getId() + "/buddies/" + added.getId(), BuddyInfo.class);
+        assertEquals("Temp", byLocation.getBody().getName());
+        ResponseEntity<Void> delResp = rest.exchange(
+                base() + "/" + book.getId() + "/buddies/" + added.getId(), HttpMethod.DELETE, null, Void.class);
+        assertEquals(HttpStatus.NO_CONTENT, delResp.getStatusCode());
+
+        assertEquals(0, stats.getCollectionLoadCount(), "buddies collection must not be loaded");
+        assertEquals(0, stats.getCollectionFetchCount(), "buddies collection must not be fetched");
+
+        AddressBook fetched = getBook(book.getId());
+        assertEquals(1, fetched.getBuddies().size());
+        assertEquals(keep.getId(), fetched.getBuddies().get(0).getId());
+    }
+
+    @Test
+    void cached_reads_hit_second_level_cache_and_see_every_mutation() {
+        AddressBook book = createBook("Cached");
+        Long id = book.getId();
+        addBuddy(id, "One", "1", "A");
+        getBook(id); // warm entity + collection regions
+
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        getBook(id);
+        assertTrue(stats.getSecondLevelCacheHitCount() > 0, "second read should be served from L2");
+        assertEquals(0, stats.getPrepareStatementCount(), "a warm read should not touch the database");
+
+        // single add -> visible despite cached collection
+        BuddyInfo two = addBuddy(id, "Two", "2", "B");
+        assertEquals(2, getBook(id).getBuddies().size());
+
+        // single remove -> visible
+        rest.delete(base() + "/" + id + "/buddies/" + two.getId());
+        assertEquals(1, getBook(id).getBuddies().size());
+
+        // bulk add -> visible
+        rest.postForEntity(base() + "/" + id + "/buddies/bulk",
+                new BuddyInfo[]{new BuddyInfo("Three", "3", "C")}, AddressBook.class);
+        assertEquals(2, getBook(id).getBuddies().size());
+
+        // delete book -> gone
+        rest.delete(base() + "/" + id);
+        assertEquals(HttpStatus.NOT_FOUND, rest.getForEntity(base() + "/" + id, String.class).getStatusCode());
+
+        CacheRegionStats[] regions = rest.getForObject(
+                "http://localhost:" + managementPort + "/actuator/cachestats", CacheRegionStats[].class);
+        assertTrue(java.util.Arrays.stream(regions)
+                .anyMatch(r -> r.region().equals("lab1.AddressBook.buddies") && r.hits() > 0));
+    }
+
+    @Test
+    void conditional_get_returns_304_with_one_query_until_a_buddy_changes() {
+        AddressBook book = createBook("Polled");
+        addBuddy(book.getId(), "One", "1", "A");
+        String bookUrl = base() + "/" + book.getId();
+
+        ResponseEntity<AddressBook> first = rest.getForEntity(bookUrl, AddressBook.class);
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        ResponseEntity<String> notModified = rest.exchange(bookUrl, HttpMethod.GET, ifNoneMatch(etag), String.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+        assertEquals(1, stats.getPrepareStatementCount(), "304 path should run only the version query");
+        assertEquals(0, stats.getEntityLoadCount());
+        assertEquals(0, stats.getCollectionLoadCount());
+        assertEquals(0, stats.getSecondLevelCacheHitCount());
+
+        ResponseEntity<String> view = rest.exchange(bookUrl + "/view", HttpMethod.GET, ifNoneMatch(etag), String.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, view.getStatusCode());
+
+        // any buddy mutation moves the version on
+        BuddyInfo two = addBuddy(book.getId(), "Two", "2", "B");
+        ResponseEntity<AddressBook> changed = rest.exchange(bookUrl, HttpMethod.GET, ifNoneMatch(etag), AddressBook.class);
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        String afterAdd = changed.getHeaders().getETag();
+        assertNotEquals(etag, afterAdd);
+
+        rest.delete(bookUrl + "/buddies/" + two.getId());
+        assertEquals(HttpStatus.OK,
+                rest.exchange(bookUrl, HttpMethod.GET, ifNoneMatch(afterAdd), String.class).getStatusCode());
+    }
+
+    private static HttpEntity<Void> ifNoneMatch(String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        return new HttpEntity<>(headers);
+    }
+
     @Test
     void delete_book_then_404_on_get() {
         AddressBook book = createBook("Temp");
@@ -131,4 +254,293 @@ class AddressBookIntegrationTest {
         assertEquals(HttpStatus.NOT_FOUND, getResp.getStatusCode());
         assertTrue(getResp.getBody().contains("Not found"));
     }
+
+    @Test
+    void ndjson_import_accepts_valid_lines_and_reports_bad_ones() {
+        AddressBook book = createBook("Importer");
+        String body = String.join("\n",
+                "{\"name\":\"Alice\",\"phone\":\"555-1111\",\"address\":\"Toronto\"}",
+                "{\"name\":\"Bob\",\"phone\":\"555-2222\"}",
+                "{\"name\":\" \",\"phone\":\"555-3333\"}",
+                "not json",
+                "",
+                "{\"name\":\"Carol\",\"phone\":\"555-4444\",\"address\":\"Ottawa\"}");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        ResponseEntity<BuddyImportSummary> resp = rest.postForEntity(
+                base() + "/" + book.getId() + "/buddies/import",
+                new HttpEntity<>(body, headers),
+                BuddyImportSummary.class);
+
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        BuddyImportSummary summary = resp.getBody();
+        assertNotNull(summary);
+        assertEquals(3, summary.accepted());
+        assertEquals(2, summary.rejected());
+        assertEquals(3, summary.errors().get(0).line());
+        assertEquals(4, summary.errors().get(1).line());
+        assertFalse(summary.errorsTruncated());
+
+        AddressBook fetched = getBook(book.getId());
+        assertEquals(3, fetched.getBuddies().size());
+        assertTrue(fetched.getBuddies().stream().anyMatch(b -> "Bob".equals(b.getName()) && "N/A".equals(b.getAddress())));
+    }
+
+    @Test
+    void ndjson_import_rejects_only_the_line_the_database_refuses() {
+        AddressBook book = createBook("LongLines");
+        String body = String.join("\n",
+                "{\"name\":\"Dana\",\"phone\":\"555-5551\"}",
+                "{\"name\":\"" + "x".repeat(300) + "\",\"phone\":\"555-5552\"}", // longer than the column
+                "{\"name\":\"Eli\",\"phone\":\"555-5553\"}");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        BuddyImportSummary summary = rest.postForObject(
+                base() + "/" + book.getId() + "/buddies/import",
+                new HttpEntity<>(body, headers),
+                BuddyImportSummary.class);
+
+        assertEquals(2, summary.accepted());
+        assertEquals(1, summary.rejected());
+        assertEquals(2, summary.errors().get(0).line());
+        assertFalse(summary.errors().get(0).message().toLowerCase().contains("sql"), summary.errors().get(0).message());
+        assertEquals(List.of("Dana", "Eli"),
+                getBook(book.getId()).getBuddies().stream().map(BuddyInfo::getName).sorted().toList());
+    }
+
+    @Test
+    void ndjson_import_rejects_duplicates_of_existing_and_earlier_lines() {
+        AddressBook book = createBook("Deduper");
+        addBuddy(book.getId(), "Alice", "555-1111", "Toronto");
+        String body = String.join("\n",
+                "{\"name\":\"alice\",\"phone\":\"(555) 1111\",\"address\":\"TORONTO\"}",
+                "{\"name\":\"Bob\",\"phone\":\"555-2222\"}",
+                "{\"name\":\"Bob\",\"phone\":\"5552222\"}");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        BuddyImportSummary summary = rest.postForObject(
+                base() + "/" + book.getId() + "/buddies/import",
+                new HttpEntity<>(body, headers),
+                BuddyImportSummary.class);
+
+        assertEquals(1, summary.accepted());
+        assertEquals(2, summary.rejected());
+        assertEquals(2, getBook(book.getId()).getBuddies().size());
+    }
+
+    @Test
+    void ndjson_import_into_missing_book_is_404() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        ResponseEntity<String> resp = rest.postForEntity(
+                base() + "/987654/buddies/import",
+                new HttpEntity<>("{\"name\":\"A\",\"phone\":\"1\"}", headers),
+                String.class);
+        assertEquals(HttpStatus.NOT_FOUND, resp.getStatusCode());
+    }
+
+    @Test
+    void export_ndjson_streams_every_buddy_in_id_order() {
+        AddressBook book = createBook("Exporter");
+        BuddyInfo first = addBuddy(book.getId(), "Ann", "555-0001", "Ottawa");
+        BuddyInfo second = addBuddy(book.getId(), "Ben", "555-0002", "Kanata");
+
+        ResponseEntity<String> resp = rest.getForEntity(base() + "/" + book.getId() + "/export", String.class);
+
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertTrue(resp.getHeaders().getContentType().toString().startsWith("application/x-ndjson"));
+        String[] lines = resp.getBody().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"id\":" + first.getId() + ",\"name\":\"Ann\",\"phone\":\"555-0001\",\"address\":\"Ottawa\"}", lines[0]);
+        assertTrue(lines[1].startsWith("{\"id\":" + second.getId() + ","));
+    }
+
+    @Test
+    void export_csv_quotes_fields_and_gzips_on_request() throws Exception {
+        AddressBook book = createBook("Csv");
+        BuddyInfo b = addBuddy(book.getId(), "Smith, \"Jo\"", "555-0003", "1 Main St");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ResponseEntity<byte[]> resp = rest.exchange(base() + "/" + book.getId() + "/export?format=csv",
+                HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertEquals("gzip", resp.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        try (java.util.zip.GZIPInputStream in = new java.util.zip.GZIPInputStream(new java.io.ByteArrayInputStream(resp.getBody()))) {
+            String csv = new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+            assertEquals("id,name,phone,address\r\n" + b.getId() + ",\"Smith, \"\"Jo\"\"\",555-0003,1 Main St\r\n", csv);
+        }
+    }
+
+    @Test
+    void export_of_missing_book_is_404() {
+        ResponseEntity<String> resp = rest.getForEntity(base() + "/987654/export?format=csv", String.class);
+        assertEquals(HttpStatus.NOT_FOUND, resp.getStatusCode());
+    }
+
+    @Test
+    void prometheus_scrape_reports_handler_jpa_pool_and_book_size_meters() {
+        AddressBook book = createBook("Metered");
+        addBuddy(book.getId(), "Ann", "555-0001", "Ottawa");
+        getBook(book.getId());
+
+        String scrape = rest.getForObject("http://localhost:" + managementPort + "/actuator/prometheus", String.class);
+
+        assertTrue(scrape.contains("handler=\"AddressBookController.get\""), "per-handler request timer");
+        assertTrue(scrape.contains("hibernate_query_executions_total"), "hibernate statistics");
+        assertTrue(scrape.contains("hibernate_second_level_cache_requests_total"), "L2 hits and misses");
+        assertTrue(scrape.contains("hikaricp_connections_acquire_seconds"), "pool wait time");
+        assertTrue(scrape.contains("addressbook_buddies_per_book_buddies_count"), "buddy-count distribution");
+    }
+
+    @Test
+    @ExtendWith(OutputCaptureExtension.class)
+    void statistics_are_not_logged_per_session(CapturedOutput output) {
+        AddressBook book = createBook("Quiet");
+        addBuddy(book.getId(), "Ann", "555-0002", "Ottawa");
+        getBook(book.getId());
+
+        assertFalse(output.getAll().contains("Session Metrics"), "one log block per session");
+        assertFalse(output.getAll().contains("StatisticalLoggingSessionEventListener"));
+    }
+
+    @Test
+    void read_endpoints_stay_within_query_budgets_whatever_the_book_size() {
+        AddressBook book = createBook("Budgeted");
+        List<BuddyInfo> buddies = new java.util.ArrayList<>();
+        for (int i = 0; i < 50; i++) buddies.add(new BuddyInfo("name" + i, "555-" + i, "Budget St"));
+        rest.postForEntity(base() + "/" + book.getId() + "/buddies/bulk", buddies, AddressBook.class);
+        String url = base() + "/" + book.getId();
+
+        // book row + one collection query, not one per buddy; afterwards served from L2
+        queries.atMost(2, () -> rest.getForEntity(url, String.class));
+        queries.atMost(0, () -> rest.getForEntity(url, String.class));
+        queries.atMost(1, () -> rest.getForEntity(url + "?view=summary", String.class));
+        queries.atMost(1, () -> rest.getForEntity(url + "/buddies?limit=20", String.class));
+        queries.atMost(2, () -> rest.getForEntity(url + "/view", String.class));
+        // dedup lookup, version bump, delta-sync change_seq bump and read, insert (+ the odd sequence fetch)
+        queries.atMost(6, () -> addBuddy(book.getId(), "Late", "555-9999", "Budget St"));
+    }
+
+    @Test
+    void batch_get_answers_in_request_order_with_two_queries_for_any_number_of_books() {
+        List<Long> ids = new java.util.ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Long id = createBook("Batch" + i).getId();
+            List<BuddyInfo> buddies = List.of(new BuddyInfo("first" + i, "555-1" + i, "Batch St"),
+                    new BuddyInfo("second" + i, "555-2" + i, "Batch St"));
+            rest.postForEntity(base() + "/" + id + "/buddies/bulk", buddies, AddressBook.class);
+            ids.add(id);
+        }
+        List<Long> request = new java.util.ArrayList<>(ids);
+        java.util.Collections.reverse(request);
+        request.add(2, 987654321L);
+        request.add(ids.get(0)); // asked twice, answered twice
+
+        entityManagerFactory.getCache().evictAll();
+        // books by IN, then all their buddies in one batched fetch
+        AddressBookBatch answer = queries.atMost(2, () -> rest.postForObject(base() + "/batch-get", request, AddressBookBatch.class));
+
+        List<AddressBookBatch.Entry> results = answer.results();
+        assertEquals(request, results.stream().map(AddressBookBatch.Entry::id).toList());
+        assertFalse(results.get(2).found());
+        assertNull(results.get(2).book());
+        AddressBookBatch.Entry last = results.get(results.size() - 1);
+        assertTrue(last.found());
+        assertEquals("Batch0", last.book().owner());
+        assertEquals(List.of("first0", "second0"), last.book().buddies().stream().map(BuddyView::name).toList());
+
+        // with a limit: the books by IN and a window query for their first buddies; no collection is loaded
+        entityManagerFactory.getCache().evictAll();
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long collectionsBefore = stats.getCollectionLoadCount();
+        AddressBookBatch limited = queries.atMost(2, () -> rest.postForObject(base() + "/batch-get?buddyLimit=1",
+                List.of(ids.get(5), ids.get(6), 987654321L), AddressBookBatch.class));
+        assertEquals(collectionsBefore, stats.getCollectionLoadCount());
+        assertEquals(List.of("first5"), limited.results().get(0).book().buddies().stream().map(BuddyView::name).toList());
+        assertEquals(2, limited.results().get(0).buddyCount());
+        assertEquals("Batch6", limited.results().get(1).book().owner());
+        assertFalse(limited.results().get(2).found());
+        AddressBookBatch none = rest.postForObject(base() + "/batch-get?buddyLimit=0", List.of(ids.get(5)), AddressBookBatch.class);
+        assertEquals(List.of(), none.results().get(0).book().buddies());
+        assertEquals(2, none.results().get(0).buddyCount());
+
+        List<Long> tooMany = java.util.stream.LongStream.range(0, AddressBookController.MAX_BATCH_IDS + 1).boxed().toList();
+        assertEquals(HttpStatus.BAD_REQUEST, rest.postForEntity(base() + "/batch-get", tooMany, String.class).getStatusCode());
+    }
+
+    @Test
+    void html_view_is_paged_and_reuses_rendered_pages_until_the_book_changes() {
+        AddressBook book = createBook("Paged");
+        List<BuddyInfo> buddies = new java.util.ArrayList<>();
+        for (int i = 0; i < 120; i++) buddies.add(new BuddyInfo("pal" + i, "613-" + i, "Page St"));
+        rest.postForEntity(base() + "/" + book.getId() + "/buddies/bulk", buddies, AddressBook.class);
+        String view = base() + "/" + book.getId() + "/view?size=50";
+
+        String first = rest.getForObject(view, String.class);
+        assertTrue(first.contains("Buddies: <span>120</span>"), first);
+        assertTrue(first.contains(">pal49<") && !first.contains(">pal50<"));
+        assertTrue(first.contains("Page 1 of 3"));
+        String last = rest.getForObject(view + "&page=2", String.class);
+        assertTrue(last.contains(">pal119<") && !last.contains(">pal99<"));
+        assertTrue(last.contains("Previous") && !last.contains("Next"));
+
+        // same version and page: the rendered fragment is reused, no count or page query
+        queries.atMost(0, () -> rest.getForEntity(view, String.class));
+
+        addBuddy(book.getId(), "pal-new", "613-9999", "Page St");
+        assertTrue(rest.getForObject(view, String.class).contains("Buddies: <span>121</span>"));
+    }
+
+    @Test
+    void search_sees_added_and_removed_buddies() {
+        AddressBook book = createBook("Searcher");
+        BuddyInfo ann = addBuddy(book.getId(), "Annabel Lee", "613-555-0001", "Ottawa");
+        addBuddy(book.getId(), "Bob Annis", "416-555-0002", "Toronto");
+        String search = base() + "/" + book.getId() + "/buddies/search?q=";
+
+        BuddySearchHit[] hits = rest.getForObject(search + "ann", BuddySearchHit[].class);
+        assertEquals(2, hits.length);
+        hits = rest.getForObject(search + "ann ott", BuddySearchHit[].class);
+        assertEquals(1, hits.length);
+        assertEquals(ann.getId(), hits[0].id());
+        assertEquals(1, rest.getForObject(search + "613555", BuddySearchHit[].class).length);
+
+        rest.delete(base() + "/" + book.getId() + "/buddies/" + ann.getId());
+        assertEquals(0, rest.getForObject(search + "ann ott", BuddySearchHit[].class).length);
+        assertEquals(HttpStatus.NOT_FOUND, rest.getForEntity(base() + "/987654/buddies/search?q=a", String.class).getStatusCode());
+    }
+
+    @Test
+    void duplicate_scan_clusters_buddies_across_books_and_streams_them() throws Exception {
+        AddressBook work = createBook("DupWork");
+        AddressBook home = createBook("DupHome");
+        BuddyInfo a = addBuddy(work.getId(), "Rosalind Franklin", "613-555-7788", "Ottawa");
+        BuddyInfo b = addBuddy(home.getId(), "Rosalind Franklyn", "(613) 555 7788", "Kanata");
+
+        String scan = "http://localhost:" + managementPort + "/actuator/duplicates";
+        HttpHeaders json = new HttpHeaders();
+        json.setContentType(MediaType.APPLICATION_JSON); // else the client sends a form content type, which actuator refuses
+        ResponseEntity<DuplicateScanStatus> started = rest.postForEntity(scan, new HttpEntity<>(json), DuplicateScanStatus.class);
+        assertEquals(HttpStatus.ACCEPTED, started.getStatusCode());
+        DuplicateScanStatus status = started.getBody();
+        for (int i = 0; i < 100 && status.state() == DuplicateScanStatus.State.RUNNING; i++) {
+            Thread.sleep(50);
+            status = rest.getForObject(scan, DuplicateScanStatus.class);
+        }
+        assertEquals(DuplicateScanStatus.State.DONE, status.state());
+
+        String ndjson = rest.getForObject(scan + "/clusters", String.class);
+        assertTrue(ndjson.lines().anyMatch(line ->
+                line.contains("\"id\":" + a.getId() + ",") && line.contains("\"id\":" + b.getId() + ",")), ndjson);
+
+        // operator tools are served on the management port only
+        assertEquals(HttpStatus.NOT_FOUND,
+                rest.postForEntity("http://localhost:" + port + "/admin/duplicates/scan", null, String.class).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, rest.getForEntity("http://localhost:" + port + "/admin/caches", String.class).getStatusCode());
+    }
 }
@@ -43,6 +43,56 @@ class AddressBookTest {
         assertEquals(1, ab.size());
     }
 
+    @Test
+    void addBuddy_skips_business_key_duplicates_by_default() {
+        AddressBook ab = new AddressBook("Alice");
+        BuddyInfo first = new BuddyInfo("John Smith", "(613) 555-0100", "1 Main St");
+        BuddyInfo again = new BuddyInfo("  john   smith ", "613.555.0100", "1 MAIN ST");
+
+        ab.addBuddy(first);
+        ab.addBuddy(again);
+
+        assertEquals(1, ab.size());
+        assertSame(first, ab.getBuddies().get(0));
+        assertNull(again.getAddressBook());
+    }
+
+    @Test
+    void addBuddy_reject_policy_throws_on_duplicate() {
+        AddressBook ab = new AddressBook("Alice");
+        ab.addBuddy(new BuddyInfo("John", "123", "X St"), DuplicatePolicy.REJECT);
+
+        assertThrows(DuplicateBuddyException.class,
+                () -> ab.addBuddy(new BuddyInfo("john", "1-2-3", "x st"), DuplicatePolicy.REJECT));
+        assertEquals(1, ab.size());
+    }
+
+    @Test
+    void addBuddy_upsert_policy_overwrites_existing_fields() {
+        AddressBook ab = new AddressBook("Alice");
+        BuddyInfo existing = new BuddyInfo("john", "1231234", "x st");
+        ab.addBuddy(existing);
+
+        BuddyInfo held = ab.addBuddy(new BuddyInfo("John", "123-1234", "X St"), DuplicatePolicy.UPSERT);
+
+        assertSame(existing, held);
+        assertEquals(1, ab.size());
+        assertEquals("John", existing.getName());
+        assertEquals("123-1234", existing.getPhone());
+    }
+
+    @Test
+    void removed_buddy_can_be_added_again() {
+        AddressBook ab = new AddressBook("Alice");
+        BuddyInfo b = new BuddyInfo("John", "123", "X St");
+        ab.addBuddy(b);
+        ab.removeBuddy(b);
+
+        ab.addBuddy(new BuddyInfo("John", "123", "X St"), DuplicatePolicy.REJECT);
+
+        assertEquals(1, ab.size());
+    }
+
     @Test
     void removeBuddy_unlinks_both_sides() {
         AddressBook ab = new AddressBook("Alice");
@@ -0,0 +1,96 @@
+package lab1;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * N sequential GET /addressbooks/{id} against one POST /addressbooks/batch-get, for 10, 100 and
+ * 1000 books of 10 buddies, with a cold and a warm second-level cache.
+ * Disabled by default; run with: mvn test -Dbenchmarks=true -Dtest=BatchGetBenchmarkTest
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BatchGetBenchmarkTest {
+    static final int BOOKS = 1_000;
+    static final int BUDDIES = 10;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    AddressBookRepository abRepo;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    void batch_get_vs_sequential_gets() throws Exception {
+        List<Long> ids = tx.execute(status -> {
+            List<AddressBook> books = new ArrayList<>(BOOKS);
+            for (int i = 0; i < BOOKS; i++) {
+                AddressBook book = new AddressBook("bench" + i);
+                for (int j = 0; j < BUDDIES; j++) book.addBuddy(new BuddyInfo("name" + j, "555-" + i + "-" + j, "Bench St"));
+                books.add(book);
+            }
+            return abRepo.saveAll(books).stream().map(AddressBook::getId).toList();
+        });
+        String base = "http://localhost:" + port + "/addressbooks";
+
+        sequential(base, ids); // warm-up
+        batch(base, ids);
+        for (int n : new int[]{10, 100, 1_000}) {
+            List<Long> some = ids.subList(0, n);
+            for (boolean cold : new boolean[]{true, false}) {
+                long seq = Long.MAX_VALUE, one = Long.MAX_VALUE;
+                for (int run = 0; run < 3; run++) {
+                    if (cold) emf.getCache().evictAll();
+                    seq = Math.min(seq, sequential(base, some));
+                    if (cold) emf.getCache().evictAll();
+                    one = Math.min(one, batch(base, some));
+                }
+                System.out.printf("%,5d books (%s cache): %,5d GETs %,8.1f ms   batch-get %,7.1f ms%n",
+                        n, cold ? "cold" : "warm", n, seq / 1e6, one / 1e6);
+            }
+        }
+    }
+
+    private long sequential(String base, List<Long> ids) throws Exception {
+        long start = System.nanoTime();
+        for (Long id : ids) send(HttpRequest.newBuilder(URI.create(base + "/" + id)).GET().build());
+        return System.nanoTime() - start;
+    }
+
+    private long batch(String base, List<Long> ids) throws Exception {
+        String body = ids.stream().map(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+        long start = System.nanoTime();
+        send(HttpRequest.newBuilder(URI.create(base + "/batch-get"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build());
+        return System.nanoTime() - start;
+    }
+
+    private void send(HttpRequest request) throws Exception {
+        HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (resp.statusCode() != 200) throw new AssertionError(resp.statusCode() + " " + resp.body());
+    }
+}
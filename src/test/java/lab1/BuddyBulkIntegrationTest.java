@@ -0,0 +1,159 @@
+package lab1;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BuddyBulkIntegrationTest {
+
+    @RegisterExtension
+    QueryBudgetExtension queries = new QueryBudgetExtension();
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @Autowired
+    AddressBookRepository abRepo;
+
+    @Autowired
+    BuddyInfoRepository buddyRepo;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    private String base() {
+        return "http://localhost:" + port + "/addressbooks";
+    }
+
+    // ---------- helpers ----------
+    private Long createBook(String owner) {
+        return rest.postForEntity(base(), new AddressBook(owner), AddressBook.class).getBody().getId();
+    }
+
+    private Long addBuddy(Long bookId, String name, String phone) {
+        return rest.postForEntity(base() + "/" + bookId + "/buddies", new BuddyInfo(name, phone, "Bulk St"), BuddyInfo.class)
+                .getBody().getId();
+    }
+
+    private List<String> names(Long bookId) {
+        return rest.getForObject(base() + "/" + bookId, AddressBookView.class).buddies().stream().map(BuddyView::name).toList();
+    }
+
+    private BuddySync sync(Long bookId, Long since) {
+        return rest.getForObject(base() + "/" + bookId + "/sync" + (since == null ? "" : "?since=" + since), BuddySync.class);
+    }
+
+    private int hits(Long bookId, String q) {
+        return rest.getForObject(base() + "/" + bookId + "/buddies/search?q=" + q, BuddySearchHit[].class).length;
+    }
+
+    // ---------- tests ----------
+
+    @Test
+    void bulk_delete_removes_only_the_books_buddies_and_keeps_readers_in_step() {
+        Long book = createBook("BulkDelete");
+        Long other = createBook("BulkDeleteOther");
+        Long ann = addBuddy(book, "Ann", "613-555-2001");
+        Long bob = addBuddy(book, "Bob", "613-555-2002");
+        addBuddy(book, "Cyd", "613-555-2003");
+        Long dee = addBuddy(other, "Dee", "613-555-2004");
+
+        String etag = rest.getForEntity(base() + "/" + book, String.class).getHeaders().getETag(); // also warms the cache
+        BuddySync before = sync(book, null);
+
+        BuddyBulkResult result = rest.postForObject(base() + "/" + book + "/buddies/bulk-delete",
+                List.of(ann, bob, dee, 987654L, ann), BuddyBulkResult.class);
+        assertEquals(List.of(ann, bob), result.affected());
+        assertEquals(List.of(dee, 987654L), result.skipped());
+
+        ResponseEntity<String> after = rest.getForEntity(base() + "/" + book, String.class);
+        assertNotEquals(etag, after.getHeaders().getETag());
+        assertEquals(List.of("Cyd"), names(book));
+        assertEquals(List.of("Dee"), names(other));
+
+        BuddySync delta = sync(book, before.seq());
+        assertEquals(List.of(), delta.buddies());
+        assertEquals(List.of(ann, bob), delta.removed());
+        assertEquals(0, hits(book, "ann"));
+        assertEquals(1, hits(book, "cyd"));
+
+        assertEquals(HttpStatus.NOT_FOUND, rest.postForEntity(base() + "/987654/buddies/bulk-delete",
+                List.of(ann), String.class).getStatusCode());
+    }
+
+    @Test
+    void bulk_move_reparents_buddies_and_handles_duplicates_in_the_target() {
+        Long from = createBook("MoveFrom");
+        Long to = createBook("MoveTo");
+        Long ann = addBuddy(from, "Ann", "613-555-3001");
+        Long bob = addBuddy(from, "Bob", "613-555-3002");
+        addBuddy(to, "ANN", "613 555 3001");
+        BuddySync fromBefore = sync(from, null);
+        BuddySync toBefore = sync(to, null);
+        String move = base() + "/" + from + "/buddies/bulk-move?to=" + to;
+
+        assertEquals(HttpStatus.CONFLICT,
+                rest.postForEntity(move + "&onDuplicate=reject", List.of(ann, bob), String.class).getStatusCode());
+        assertEquals(List.of("Ann", "Bob"), names(from), "a rejected move changes nothing");
+
+        BuddyBulkResult result = rest.postForObject(move, List.of(ann, bob), BuddyBulkResult.class);
+        assertEquals(List.of(bob), result.affected());
+        assertEquals(List.of(ann), result.skipped());
+        assertEquals(List.of("Ann"), names(from));
+        assertEquals(List.of("ANN", "Bob"), names(to).stream().sorted().toList());
+        assertEquals(bob, rest.getForObject(base() + "/" + to + "/buddies/" + bob, BuddyView.class).id());
+        assertEquals(HttpStatus.NOT_FOUND, rest.getForEntity(base() + "/" + from + "/buddies/" + bob, String.class).getStatusCode());
+
+        BuddySync fromDelta = sync(from, fromBefore.seq());
+        assertEquals(List.of(bob), fromDelta.removed());
+        BuddySync toDelta = sync(to, toBefore.seq());
+        assertEquals(List.of("Bob"), toDelta.buddies().stream().map(BuddyView::name).toList());
+        assertEquals(0, hits(from, "bob"));
+        assertEquals(1, hits(to, "bob"));
+
+        // moving back drops the tombstone the first move left in the source
+        rest.postForObject(base() + "/" + to + "/buddies/bulk-move?to=" + from, List.of(bob), BuddyBulkResult.class);
+        BuddySync back = sync(from, fromDelta.seq());
+        assertEquals(List.of("Bob"), back.buddies().stream().map(BuddyView::name).toList());
+        assertEquals(List.of(), back.removed());
+        assertEquals(List.of(), sync(from, fromBefore.seq()).removed());
+        assertEquals(List.of(bob), sync(to, toDelta.seq()).removed());
+
+        assertEquals(HttpStatus.NOT_FOUND, rest.postForEntity(base() + "/" + from + "/buddies/bulk-move?to=987654",
+                List.of(ann), String.class).getStatusCode());
+    }
+
+    @Test
+    void deleting_a_large_book_takes_a_fixed_number_of_statements() {
+        Long book = tx.execute(s -> {
+            AddressBook b = new AddressBook("Large");
+            for (int i = 0; i < 2_000; i++) b.addBuddy(new BuddyInfo("name" + i, "555-" + i, "Large St"));
+            return abRepo.save(b).getId();
+        });
+        rest.getForEntity(base() + "/" + book, String.class); // cached with its buddies
+
+        queries.atMost(6, () -> {
+            rest.delete(base() + "/" + book);
+            return null;
+        });
+
+        assertEquals(HttpStatus.NOT_FOUND, rest.getForEntity(base() + "/" + book, String.class).getStatusCode());
+        assertEquals(List.of(), buddyRepo.findViewsByAddressBookIdOrderByIdAsc(book));
+        assertEquals(HttpStatus.NOT_FOUND,
+                rest.getForEntity(base() + "/" + book + "/buddies/search?q=name1", String.class).getStatusCode());
+    }
+}
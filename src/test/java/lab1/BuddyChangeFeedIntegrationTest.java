@@ -0,0 +1,222 @@
+package lab1;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "addressbook.changes.buffer-size=8")
+class BuddyChangeFeedIntegrationTest {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @Autowired
+    ObjectMapper json;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final List<Stream> open = new ArrayList<>();
+
+    @AfterEach
+    void closeStreams() {
+        open.forEach(Stream::close);
+    }
+
+    private String base() {
+        return "http://localhost:" + port + "/addressbooks";
+    }
+
+    // ---------- helpers ----------
+    private Long createBook(String owner) {
+        return rest.postForEntity(base(), new AddressBook(owner), AddressBook.class).getBody().getId();
+    }
+
+    private BuddyInfo addBuddy(Long bookId, String name, String phone, String onDuplicate) {
+        return rest.postForEntity(base() + "/" + bookId + "/buddies?onDuplicate=" + onDuplicate,
+                new BuddyInfo(name, phone, "Feed St"), BuddyInfo.class).getBody();
+    }
+
+    private Stream subscribe(Long bookId, String lastEventId) throws Exception {
+        HttpRequest.Builder req = HttpRequest.newBuilder(URI.create(base() + "/" + bookId + "/changes"))
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) req.header("Last-Event-ID", lastEventId);
+        HttpResponse<InputStream> resp = http.send(req.build(), HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, resp.statusCode());
+        Stream s = new Stream(resp.body());
+        open.add(s);
+        return s;
+    }
+
+    private BuddyChange data(Sse e) throws IOException {
+        return json.readValue(e.data(), BuddyChange.class);
+    }
+
+    record Sse(String id, String event, String data) {}
+
+    /** Minimal EventSource: parses frames on a background thread; "eof" marks the end of the stream. */
+    static final class Stream {
+        final BlockingQueue<Sse> events = new LinkedBlockingQueue<>();
+        final InputStream body;
+
+        Stream(InputStream body) {
+            this.body = body;
+            Thread reader = new Thread(this::read, "sse-test-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void read() {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                String id = null, event = null;
+                StringBuilder data = null;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        if (data != null) events.add(new Sse(id, event, data.toString()));
+                        id = event = null;
+                        data = null;
+                    } else if (line.startsWith("id:")) {
+                        id = line.substring(3);
+                    } else if (line.startsWith("event:")) {
+                        event = line.substring(6);
+                    } else if (line.startsWith("data:")) {
+                        data = (data == null ? new StringBuilder() : data.append('\n')).append(line.substring(5));
+                    }
+                }
+            } catch (IOException ignored) {
+                // closed by the test
+            }
+            events.add(new Sse(null, "eof", null));
+        }
+
+        Sse next() throws InterruptedException {
+            Sse e = events.poll(10, TimeUnit.SECONDS);
+            assertNotNull(e, "no event within 10s");
+            return e;
+        }
+
+        void close() {
+            try {
+                body.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // ---------- tests ----------
+
+    @Test
+    void streams_committed_adds_updates_and_removes_of_its_own_book() throws Exception {
+        Long book = createBook("Watched");
+        Long other = createBook("Unwatched");
+        Stream stream = subscribe(book, null);
+
+        addBuddy(other, "Elsewhere", "613-555-0000", "skip");
+        BuddyInfo ann = addBuddy(book, "Ann", "613-555-0101", "skip");
+        Sse added = stream.next();
+        assertEquals("buddy-added", added.event());
+        assertNotNull(added.id());
+        assertEquals(new BuddyChange(BuddyChange.Type.ADDED, book, ann.getId(), "Ann", "613-555-0101", "Feed St"), data(added));
+
+        // same business key, different spelling: an update of the existing buddy
+        addBuddy(book, "ANN", "(613) 555-0101", "upsert");
+        Sse updated = stream.next();
+        assertEquals("buddy-updated", updated.event());
+        assertEquals("ANN", data(updated).name());
+
+        // a rejected duplicate commits nothing
+        assertEquals(HttpStatus.CONFLICT, rest.postForEntity(base() + "/" + book + "/buddies?onDuplicate=reject",
+                new BuddyInfo("Ann", "613-555-0101", "Feed St"), String.class).getStatusCode());
+
+        rest.delete(base() + "/" + book + "/buddies/" + ann.getId());
+        Sse removed = stream.next();
+        assertEquals("buddy-removed", removed.event());
+        assertEquals(new BuddyChange(BuddyChange.Type.REMOVED, book, ann.getId(), null, null, null), data(removed));
+        assertTrue(Long.parseLong(removed.id()) > Long.parseLong(updated.id()));
+        assertTrue(stream.events.isEmpty());
+    }
+
+    @Test
+    void last_event_id_resumes_with_what_was_missed() throws Exception {
+        Long book = createBook("Resumer");
+        Stream first = subscribe(book, null);
+        addBuddy(book, "One", "613-555-0001", "skip");
+        String seen = first.next().id();
+        first.close();
+
+        addBuddy(book, "Two", "613-555-0002", "skip");
+        addBuddy(createBook("Noise"), "Other", "613-555-0009", "skip");
+        addBuddy(book, "Three", "613-555-0003", "skip");
+
+        Stream resumed = subscribe(book, seen);
+        assertEquals("Two", data(resumed.next()).name());
+        assertEquals("Three", data(resumed.next()).name());
+        addBuddy(book, "Four", "613-555-0004", "skip");
+        assertEquals("Four", data(resumed.next()).name());
+    }
+
+    @Test
+    void unknown_or_too_old_last_event_id_gets_a_reset() throws Exception {
+        Long book = createBook("Resetter");
+        Stream stale = subscribe(book, "1");
+        Sse reset = stale.next();
+        assertEquals(BuddyChangeFeed.RESET_EVENT, reset.event());
+
+        // more missed events than a subscriber buffer holds (8 here): reset rather than replay
+        for (int i = 0; i < 10; i++) addBuddy(book, "Many" + i, "613-555-01" + (10 + i), "skip");
+        Stream behind = subscribe(book, reset.id());
+        Sse again = behind.next();
+        assertEquals(BuddyChangeFeed.RESET_EVENT, again.event());
+
+        // resuming from the reset's id picks up only what follows it
+        addBuddy(book, "After", "613-555-0200", "skip");
+        Stream fresh = subscribe(book, again.id());
+        assertEquals("After", data(fresh.next()).name());
+    }
+
+    @Test
+    void deleting_the_book_sends_book_deleted_and_ends_the_stream() throws Exception {
+        Long book = createBook("Doomed");
+        addBuddy(book, "Gone", "613-555-0300", "skip");
+        Stream stream = subscribe(book, null);
+
+        rest.delete(base() + "/" + book);
+        Sse e = stream.next();
+        while (e.event().equals("buddy-removed")) e = stream.next();
+        assertEquals("book-deleted", e.event());
+        assertEquals(BuddyChange.bookDeleted(book), data(e));
+        assertEquals("eof", stream.next().event());
+    }
+
+    @Test
+    void unknown_book_is_404() throws Exception {
+        HttpResponse<String> resp = http.send(HttpRequest.newBuilder(URI.create(base() + "/987654321/changes"))
+                .header("Accept", "text/event-stream").build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(404, resp.statusCode());
+    }
+}
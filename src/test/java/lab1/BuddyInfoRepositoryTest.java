@@ -1,15 +1,27 @@
 package lab1;
 
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.TestPropertySource;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DataJpaTest(properties = {
         "spring.jpa.hibernate.ddl-auto=create-drop" // clean schema for tests
@@ -21,14 +33,54 @@ import static org.assertj.core.api.Assertions.assertThat;
         "spring.datasource.username=sa",
         "spring.datasource.password="
 })
+@Import(BuddyInfoRepositoryTest.CaptureSql.class)
 class BuddyInfoRepositoryTest {
 
+    /** QueryCounter's DataSource wrapping, keeping the statements run inside {@link #capture}. */
+    static class SqlCapture extends QueryCounter {
+        private volatile List<QueryInfo> captured;
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            super.afterQuery(execInfo, queryInfoList);
+            List<QueryInfo> c = captured;
+            if (c != null) c.addAll(queryInfoList);
+        }
+
+        List<QueryInfo> capture(Runnable work) {
+            captured = new ArrayList<>();
+            try {
+                work.run();
+                return captured;
+            } finally {
+                captured = null;
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class CaptureSql {
+        @Bean
+        static SqlCapture sqlCapture() {
+            return new SqlCapture();
+        }
+    }
+
+    @Autowired
+    SqlCapture sql;
+
     @Autowired
     BuddyInfoRepository buddyRepo;
 
     @Autowired
     AddressBookRepository addressBookRepo;
 
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
     @Test
     @DisplayName("save BuddyInfo standalone; findByName works; 2-arg ctor defaults address")
     void saveStandalone_and_findByName() {
@@ -104,4 +156,80 @@ class BuddyInfoRepositoryTest {
         buddyRepo.delete(b);
         assertThat(buddyRepo.findByName("Zed")).isEmpty();
     }
+
+    @Test
+    @DisplayName("keyset page returns a book's buddies after the cursor, in id order")
+    void keysetPage_by_book_and_cursor() {
+        AddressBook ab = new AddressBook("Pager");
+        for (int i = 0; i < 5; i++) ab.addBuddy(new BuddyInfo("P" + i, "" + i, "Addr"));
+        AddressBook other = new AddressBook("Other");
+        other.addBuddy(new BuddyInfo("Elsewhere", "9", "Addr"));
+        addressBookRepo.save(ab);
+        addressBookRepo.save(other);
+
+        List<BuddyInfo> first = buddyRepo.findByAddressBookIdAndIdGreaterThanOrderByIdAsc(ab.getId(), 0L, Limit.of(2));
+        assertThat(first).extracting(BuddyInfo::getName).containsExactly("P0", "P1");
+
+        List<BuddyInfo> rest = buddyRepo.findByAddressBookIdAndIdGreaterThanOrderByIdAsc(
+                ab.getId(), first.get(1).getId(), Limit.of(10));
+        assertThat(rest).extracting(BuddyInfo::getName).containsExactly("P2", "P3", "P4");
+
+        assertThat(buddyRepo.countByAddressBookId(ab.getId())).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("unique (address_book_id, dedup_key) index rejects a duplicate buddy in the same book")
+    void unique_dedup_index_per_book() {
+        AddressBook ab = addressBookRepo.save(new AddressBook("Owner"));
+        BuddyInfo first = new BuddyInfo("Dup", "555-0000", "Same St");
+        first.setAddressBook(ab);
+        buddyRepo.save(first);
+
+        BuddyInfo again = new BuddyInfo("dup", "5550000", "same st");
+        again.setAddressBook(ab);
+        assertThatThrownBy(() -> {
+            buddyRepo.save(again);
+            em.flush();
+        }).isInstanceOf(ConstraintViolationException.class);
+    }
+
+    @Test
+    @DisplayName("findExistingDedupKeys / findByAddressBookIdAndDedupKey look up by business key")
+    void lookup_by_dedup_key() {
+        AddressBook ab = new AddressBook("Owner");
+        BuddyInfo b = new BuddyInfo("Key", "1", "K St");
+        ab.addBuddy(b);
+        addressBookRepo.save(ab);
+
+        String other = BuddyInfo.dedupKey("Nobody", "2", "N St");
+        assertThat(buddyRepo.findExistingDedupKeys(ab.getId(), List.of(b.getDedupKey(), other)))
+                .containsExactly(b.getDedupKey());
+        assertThat(buddyRepo.findByAddressBookIdAndDedupKey(ab.getId(), BuddyInfo.dedupKey(" key", "1", "k st")))
+                .get().extracting(BuddyInfo::getName).isEqualTo("Key");
+    }
+
+    @Test
+    @DisplayName("finders are index lookups, not table scans (H2 EXPLAIN of the SQL they run)")
+    void finders_use_indexes() {
+        assertThat(plan(() -> buddyRepo.findByName("John")))
+                .contains("IDX_BUDDY_INFO_NAME_ADDRESS").doesNotContain("tableScan");
+        assertThat(plan(() -> buddyRepo.findByNameAndAddress("John", "X St")))
+                .contains("IDX_BUDDY_INFO_NAME_ADDRESS").doesNotContain("tableScan");
+        assertThat(plan(() -> buddyRepo.findViewsByAddressBookIdOrderByIdAsc(1L)))
+                .doesNotContain("tableScan");
+        assertThat(plan(() -> addressBookRepo.findAllByOwner("Usman")))
+                .contains("IDX_ADDRESS_BOOK_OWNER").doesNotContain("tableScan");
+    }
+
+    /** EXPLAIN of the one statement {@code finder} runs, with the values it bound. */
+    private String plan(Runnable finder) {
+        List<QueryInfo> run = sql.capture(finder);
+        assertThat(run).hasSize(1);
+        QueryInfo query = run.get(0);
+        Object[] args = query.getParametersList().get(0).stream()
+                .sorted(Comparator.comparing(op -> (Integer) op.getArgs()[0]))
+                .map(op -> op.getArgs()[1])
+                .toArray();
+        return jdbc.queryForObject("EXPLAIN " + query.getQuery(), String.class, args);
+    }
 }
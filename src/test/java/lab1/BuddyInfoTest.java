@@ -94,6 +94,27 @@ class BuddyInfoTest {
         assertEquals(b1.hashCode(), b2.hashCode());
     }
 
+    // --- business key ---
+
+    @Test
+    void dedupKey_ignores_case_spacing_and_phone_formatting() {
+        BuddyInfo a = new BuddyInfo("John  Smith", "(613) 555-0100", "1 Main St");
+        BuddyInfo b = new BuddyInfo(" john smith", "613.555.0100", "1 MAIN ST ");
+        BuddyInfo c = new BuddyInfo("John Smith", "613-555-0199", "1 Main St");
+
+        assertEquals(a.getDedupKey(), b.getDedupKey());
+        assertNotEquals(a.getDedupKey(), c.getDedupKey());
+    }
+
+    @Test
+    void dedupKey_follows_setters() {
+        BuddyInfo b = new BuddyInfo("Mary", "555-1111");
+        String before = b.getDedupKey();
+        b.setAddress("123 Maple St");
+        assertNotEquals(before, b.getDedupKey());
+        assertEquals(BuddyInfo.dedupKey("Mary", "555-1111", "123 Maple St"), b.getDedupKey());
+    }
+
     // --- back-reference link ---
 
     @Test
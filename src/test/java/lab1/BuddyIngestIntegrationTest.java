@@ -0,0 +1,208 @@
+package lab1;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BuddyIngestIntegrationTest {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @Autowired
+    BuddyIngestQueue ingestQueue;
+
+    @SpyBean
+    BuddySearchIndex searchIndex;
+
+    private String base() {
+        return "http://localhost:" + port + "/addressbooks";
+    }
+
+    // ---------- helpers ----------
+    private Long createBook(String owner) {
+        ResponseEntity<AddressBook> resp = rest.postForEntity(base(), new AddressBook(owner), AddressBook.class);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        return resp.getBody().getId();
+    }
+
+    private ResponseEntity<IngestTicket> addAsync(Long bookId, BuddyInfo buddy) {
+        return addAsync(bookId, buddy, IngestTicket.class);
+    }
+
+    private <T> ResponseEntity<T> addAsync(Long bookId, BuddyInfo buddy, Class<T> type) {
+        return addAsync(bookId + "/buddies", buddy, type);
+    }
+
+    private <T> ResponseEntity<T> addAsync(String path, BuddyInfo buddy, Class<T> type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Prefer", "respond-async");
+        return rest.exchange(base() + "/" + path, HttpMethod.POST, new HttpEntity<>(buddy, headers), type);
+    }
+
+    private IngestTicket awaitFinished(URI location) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            IngestTicket t = rest.getForObject(location, IngestTicket.class);
+            if (t.state() != IngestTicket.State.QUEUED || System.currentTimeMillis() > deadline) return t;
+            Thread.sleep(20);
+        }
+    }
+
+    // ---------- tests ----------
+
+    @Test
+    void async_add_returns202_then_ticket_reports_written_buddy() throws Exception {
+        Long bookId = createBook("Async");
+        ResponseEntity<IngestTicket> resp = addAsync(bookId, new BuddyInfo("Ann", "111", "Ottawa"));
+
+        assertEquals(HttpStatus.ACCEPTED, resp.getStatusCode());
+        assertEquals("respond-async", resp.getHeaders().getFirst("Preference-Applied"));
+        assertEquals(IngestTicket.State.QUEUED, resp.getBody().state());
+        URI location = resp.getHeaders().getLocation();
+        assertNotNull(location);
+
+        IngestTicket done = awaitFinished(location);
+        assertEquals(IngestTicket.State.WRITTEN, done.state());
+        assertNotNull(done.buddyId());
+
+        BuddyInfo written = rest.getForObject(base() + "/" + bookId + "/buddies/" + done.buddyId(), BuddyInfo.class);
+        assertEquals("Ann", written.getName());
+    }
+
+    @Test
+    void repeated_buddy_is_reported_duplicate_and_written_once() throws Exception {
+        Long bookId = createBook("Dupes");
+        URI first = addAsync(bookId, new BuddyInfo("Bo", "222", "Kanata")).getHeaders().getLocation();
+        URI second = addAsync(bookId, new BuddyInfo("Bo", "222", "Kanata")).getHeaders().getLocation();
+
+        assertEquals(IngestTicket.State.WRITTEN, awaitFinished(first).state());
+        assertEquals(IngestTicket.State.DUPLICATE, awaitFinished(second).state());
+        assertEquals(1, rest.getForObject(base() + "/" + bookId, AddressBook.class).getBuddies().size());
+    }
+
+    @Test
+    void reject_policy_fails_a_duplicate_and_upsert_is_refused() throws Exception {
+        Long bookId = createBook("Strict");
+        assertEquals(IngestTicket.State.WRITTEN,
+                awaitFinished(addAsync(bookId, new BuddyInfo("Ed", "555", "Hull")).getHeaders().getLocation()).state());
+
+        URI rejected = addAsync(bookId + "/buddies?onDuplicate=reject", new BuddyInfo("ED", "555", "Hull"), IngestTicket.class)
+                .getHeaders().getLocation();
+        IngestTicket done = awaitFinished(rejected);
+        assertEquals(IngestTicket.State.FAILED, done.state());
+        assertTrue(done.error().startsWith("duplicate buddy"), done.error());
+
+        assertEquals(HttpStatus.BAD_REQUEST, addAsync(bookId + "/buddies?onDuplicate=upsert",
+                new BuddyInfo("Ed", "555", "Hull"), String.class).getStatusCode());
+        assertEquals(1, rest.getForObject(base() + "/" + bookId, AddressBook.class).getBuddies().size());
+    }
+
+    @Test
+    void a_bad_buddy_fails_alone_and_the_rest_of_its_batch_is_written() throws Exception {
+        // the writer is held on a first buddy, so the next three are taken as one batch
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            held.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return inv.callRealMethod();
+        }).when(searchIndex).putAfterCommit(any(), argThat(b -> b != null && "Gate".equals(b.getName())));
+        Long bookId = createBook("Mixed");
+        URI gate = addAsync(bookId, new BuddyInfo("Gate", "665", "Aylmer")).getHeaders().getLocation();
+        assertTrue(held.await(5, TimeUnit.SECONDS));
+        URI good = addAsync(bookId, new BuddyInfo("Fay", "666", "Aylmer")).getHeaders().getLocation();
+        URI bad = addAsync(bookId, new BuddyInfo("x".repeat(300), "667", "Aylmer")).getHeaders().getLocation(); // too long for the column
+        URI alsoGood = addAsync(bookId, new BuddyInfo("Gus", "668", "Aylmer")).getHeaders().getLocation();
+        release.countDown();
+        assertEquals(IngestTicket.State.WRITTEN, awaitFinished(gate).state());
+
+        assertEquals(IngestTicket.State.WRITTEN, awaitFinished(good).state());
+        assertEquals(IngestTicket.State.FAILED, awaitFinished(bad).state());
+        assertEquals(IngestTicket.State.WRITTEN, awaitFinished(alsoGood).state());
+        assertEquals(3, rest.getForObject(base() + "/" + bookId, AddressBook.class).getBuddies().size());
+    }
+
+    @Test
+    void an_error_while_writing_fails_its_buddies_but_not_the_writer() throws Exception {
+        doThrow(new StackOverflowError("boom")).when(searchIndex)
+                .putAfterCommit(any(), argThat(b -> b != null && "Boom".equals(b.getName())));
+        Long bookId = createBook("Errors");
+
+        IngestTicket failed = awaitFinished(addAsync(bookId, new BuddyInfo("Boom", "777", "Gatineau")).getHeaders().getLocation());
+        assertEquals(IngestTicket.State.FAILED, failed.state());
+        assertTrue(failed.error().contains("StackOverflowError"), failed.error());
+
+        IngestTicket after = awaitFinished(addAsync(bookId, new BuddyInfo("Hal", "778", "Gatineau")).getHeaders().getLocation());
+        assertEquals(IngestTicket.State.WRITTEN, after.state());
+        assertEquals(List.of("Hal"), rest.getForObject(base() + "/" + bookId, AddressBook.class).getBuddies()
+                .stream().map(BuddyInfo::getName).toList());
+    }
+
+    @Test
+    void unknown_book_fails_the_ticket() throws Exception {
+        URI location = addAsync(999_999L, new BuddyInfo("Cy", "333", "Nepean")).getHeaders().getLocation();
+
+        IngestTicket done = awaitFinished(location);
+        assertEquals(IngestTicket.State.FAILED, done.state());
+        assertNotNull(done.error());
+    }
+
+    @Test
+    void unknown_ticket_returns404() {
+        ResponseEntity<String> resp = rest.getForEntity(base() + "/1/ingest/no-such-ticket", String.class);
+        assertEquals(HttpStatus.NOT_FOUND, resp.getStatusCode());
+    }
+
+    @Test
+    void stop_drains_queued_buddies_and_refuses_new_ones_with429() {
+        Long bookId = createBook("Drain");
+        List<URI> locations = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            locations.add(addAsync(bookId, new BuddyInfo("Buddy" + i, "555" + i, "Orleans")).getHeaders().getLocation());
+        }
+
+        ingestQueue.stop();
+        try {
+            assertEquals(0, ingestQueue.depth());
+            for (URI location : locations) {
+                assertEquals(IngestTicket.State.WRITTEN, rest.getForObject(location, IngestTicket.class).state());
+            }
+            ResponseEntity<String> refused = addAsync(bookId, new BuddyInfo("Late", "999", "Barrhaven"), String.class);
+            assertEquals(HttpStatus.TOO_MANY_REQUESTS, refused.getStatusCode());
+            assertNotNull(refused.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        } finally {
+            ingestQueue.start();
+        }
+        assertEquals(50, rest.getForObject(base() + "/" + bookId, AddressBook.class).getBuddies().size());
+    }
+
+    @Test
+    void without_prefer_header_add_stays_synchronous() {
+        Long bookId = createBook("Sync");
+        ResponseEntity<BuddyInfo> resp =
+                rest.postForEntity(base() + "/" + bookId + "/buddies", new BuddyInfo("Di", "444", "Vanier"), BuddyInfo.class);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        assertNotNull(resp.getBody().getId());
+    }
+}
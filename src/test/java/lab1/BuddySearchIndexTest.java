@@ -0,0 +1,81 @@
+package lab1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class BuddySearchIndexTest {
+
+    BuddySearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BuddySearchIndex(mock(javax.sql.DataSource.class));
+        index.put(1L, new BuddySearchHit(10L, "John Smith", "613-555-0101", "1125 Colonel By Dr, Ottawa"));
+        index.put(1L, new BuddySearchHit(11L, "Joanna Gómez", "(416) 555-0199", "Toronto"));
+        index.put(1L, new BuddySearchHit(12L, "Mary Jones", "613 555 0123", "Kanata"));
+        index.put(2L, new BuddySearchHit(20L, "John Other", "613-555-0101", "Ottawa"));
+    }
+
+    private List<Long> ids(Long book, String q) {
+        return index.search(book, q, 10).stream().map(BuddySearchHit::id).toList();
+    }
+
+    @Test
+    void prefix_matches_name_and_address_words_case_and_accent_insensitively() {
+        assertEquals(List.of(10L, 11L, 12L), ids(1L, "JO").stream().sorted().toList());
+        assertEquals(List.of(11L), ids(1L, "gomez"));
+        assertEquals(List.of(10L), ids(1L, "otta"));
+    }
+
+    @Test
+    void every_term_must_match() {
+        assertEquals(List.of(10L), ids(1L, "jo ott"));
+        assertEquals(List.of(), ids(1L, "mary toronto"));
+    }
+
+    @Test
+    void digit_terms_match_phone_prefixes_ignoring_punctuation() {
+        assertEquals(List.of(10L, 12L), ids(1L, "613555").stream().sorted().toList());
+        assertEquals(List.of(11L), ids(1L, "416"));
+        assertEquals(List.of(10L), ids(1L, "1125")); // street number via the address token
+    }
+
+    @Test
+    void formatted_phone_queries_match_as_one_digit_prefix() {
+        assertEquals(List.of(10L, 12L), ids(1L, "613-555").stream().sorted().toList());
+        assertEquals(List.of(11L), ids(1L, "(416) 555"));
+        assertEquals(List.of(12L), ids(1L, "613 555 01 mary"));
+        assertEquals(List.of(), ids(1L, "416-555-0101"));
+    }
+
+    @Test
+    void books_are_searched_separately() {
+        assertEquals(List.of(20L), ids(2L, "john"));
+        assertEquals(List.of(), ids(3L, "john"));
+    }
+
+    @Test
+    void remove_and_replace_update_the_index() {
+        index.remove(1L, 10L);
+        assertEquals(List.of(), ids(1L, "smith"));
+
+        index.put(1L, new BuddySearchHit(12L, "Mary Brown", "999", "Kanata"));
+        assertEquals(List.of(), ids(1L, "jones"));
+        assertEquals(List.of(), ids(1L, "613"));
+        assertEquals(List.of(12L), ids(1L, "brown 99"));
+
+        index.removeBook(1L);
+        assertEquals(List.of(), ids(1L, "kanata"));
+    }
+
+    @Test
+    void stops_at_the_limit() {
+        for (long i = 100; i < 200; i++) index.put(5L, new BuddySearchHit(i, "Sam " + i, "1", "X"));
+        assertEquals(7, index.search(5L, "sam", 7).size());
+    }
+}
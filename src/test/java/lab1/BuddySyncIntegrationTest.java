@@ -0,0 +1,138 @@
+package lab1;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BuddySyncIntegrationTest {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @Autowired
+    AddressBookRepository abRepo;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    @Autowired
+    TombstoneCompactor compactor;
+
+    private String base() {
+        return "http://localhost:" + port + "/addressbooks";
+    }
+
+    // ---------- helpers ----------
+    private Long createBook(String owner) {
+        return rest.postForEntity(base(), new AddressBook(owner), AddressBook.class).getBody().getId();
+    }
+
+    private BuddyInfo addBuddy(Long bookId, String name, String phone) {
+        return rest.postForEntity(base() + "/" + bookId + "/buddies", new BuddyInfo(name, phone, "Sync St"), BuddyInfo.class).getBody();
+    }
+
+    private BuddySync sync(Long bookId, Long since) {
+        String url = base() + "/" + bookId + "/sync" + (since == null ? "" : "?since=" + since);
+        return rest.getForObject(url, BuddySync.class);
+    }
+
+    private static List<String> names(BuddySync sync) {
+        return sync.buddies().stream().map(BuddyView::name).toList();
+    }
+
+    // ---------- tests ----------
+
+    @Test
+    void first_sync_is_full_then_only_changes_since_the_position_are_returned() {
+        Long book = createBook("Mobile");
+        addBuddy(book, "Keep", "613-555-1000");
+        addBuddy(book, "Edit", "613-555-1001");
+        BuddyInfo drop = addBuddy(book, "Drop", "613-555-1002");
+
+        BuddySync full = sync(book, null);
+        assertTrue(full.full());
+        assertEquals(List.of("Keep", "Edit", "Drop"), names(full));
+        assertEquals(List.of(), full.removed());
+
+        addBuddy(book, "New", "613-555-1003");
+        rest.postForEntity(base() + "/" + book + "/buddies?onDuplicate=upsert",
+                new BuddyInfo("EDIT", "613 555 1001", "Sync St"), BuddyInfo.class);
+        rest.delete(base() + "/" + book + "/buddies/" + drop.getId());
+
+        BuddySync delta = sync(book, full.seq());
+        assertFalse(delta.full());
+        assertEquals(List.of("New", "EDIT"), names(delta));
+        assertEquals(List.of(drop.getId()), delta.removed());
+        assertEquals(full.seq() + 3, delta.seq(), "one step per committed change");
+
+        BuddySync idle = sync(book, delta.seq());
+        assertEquals(delta.seq(), idle.seq());
+        assertTrue(idle.buddies().isEmpty() && idle.removed().isEmpty());
+    }
+
+    @Test
+    void one_transaction_is_one_step_and_bulk_adds_share_it() {
+        Long book = createBook("Bulk");
+        addBuddy(book, "B0", "0");
+        BuddySync before = sync(book, null);
+        rest.postForEntity(base() + "/" + book + "/buddies/bulk",
+                List.of(new BuddyInfo("B1", "1", "X"), new BuddyInfo("B2", "2", "X"), new BuddyInfo("B3", "3", "X")),
+                AddressBook.class);
+        BuddySync after = sync(book, before.seq());
+        assertEquals(before.seq() + 1, after.seq());
+        assertEquals(List.of("B1", "B2", "B3"), names(after));
+    }
+
+    @Test
+    void orphan_removal_through_the_book_leaves_a_tombstone() {
+        Long book = createBook("Orphans");
+        BuddyInfo gone = addBuddy(book, "Orphaned", "613-555-2000");
+        addBuddy(book, "Stays", "613-555-2001");
+        long position = sync(book, null).seq();
+
+        tx.executeWithoutResult(status -> {
+            AddressBook loaded = abRepo.findById(book).orElseThrow();
+            loaded.removeBuddyById(gone.getId());
+        });
+
+        BuddySync delta = sync(book, position);
+        assertEquals(List.of(gone.getId()), delta.removed());
+        assertTrue(delta.buddies().isEmpty());
+    }
+
+    @Test
+    void compaction_sends_clients_behind_the_floor_to_a_full_sync() {
+        Long book = createBook("Compacted");
+        BuddyInfo a = addBuddy(book, "A", "613-555-3000");
+        addBuddy(book, "B", "613-555-3001");
+        long old = sync(book, null).seq();
+        rest.delete(base() + "/" + book + "/buddies/" + a.getId());
+        long current = sync(book, old).seq();
+
+        assertTrue(compactor.compact(System.currentTimeMillis() + 1) >= 1);
+
+        BuddySync behind = sync(book, old);
+        assertTrue(behind.full());
+        assertEquals(List.of("B"), names(behind));
+        BuddySync upToDate = sync(book, current);
+        assertFalse(upToDate.full());
+        assertTrue(upToDate.buddies().isEmpty() && upToDate.removed().isEmpty());
+    }
+
+    @Test
+    void unknown_book_is_404() {
+        assertEquals(HttpStatus.NOT_FOUND, rest.getForEntity(base() + "/987654321/sync", String.class).getStatusCode());
+    }
+}
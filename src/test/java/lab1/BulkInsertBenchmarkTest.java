@@ -0,0 +1,59 @@
+package lab1;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures buddy inserts/sec through the JPA layer at 1k, 10k and 100k rows.
+ * Disabled by default; run with: mvn test -Dbenchmarks=true -Dtest=BulkInsertBenchmarkTest
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:bulkbench;DB_CLOSE_DELAY=-1",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.jpa.show-sql=false"
+        })
+class BulkInsertBenchmarkTest {
+
+    @Autowired
+    AddressBookRepository abRepo;
+
+    @Autowired
+    BuddyInfoRepository buddyRepo;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    @Test
+    void inserts_per_second() {
+        insert(1_000); // warm-up
+        for (int n : new int[]{1_000, 10_000, 100_000}) {
+            long nanos = insert(n);
+            System.out.printf("bulk insert %,7d buddies: %,8d ms  %,10.0f inserts/sec%n",
+                    n, nanos / 1_000_000, n / (nanos / 1e9));
+        }
+    }
+
+    private long insert(int n) {
+        AddressBook book = abRepo.save(new AddressBook("bench-" + n));
+        List<BuddyInfo> buddies = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            BuddyInfo b = new BuddyInfo("name" + i, "555-" + i, i + " Bench St");
+            b.setAddressBook(book);
+            buddies.add(b);
+        }
+        long start = System.nanoTime();
+        tx.executeWithoutResult(s -> buddyRepo.saveAll(buddies));
+        return System.nanoTime() - start;
+    }
+}
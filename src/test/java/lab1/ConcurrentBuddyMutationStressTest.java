@@ -0,0 +1,123 @@
+package lab1;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many clients adding and removing buddies on one book at once. Every add or remove that got a
+ * success status must be reflected in the final book, and nothing else; conflicts that outlast
+ * the retries must come back as 409, never 500. A few clients run by default; the full stress
+ * run is disabled by default, run it with: mvn test -Dbenchmarks=true
+ * -Dtest=ConcurrentBuddyMutationStressTest (scale with -Dstress.threads / -Dstress.ops).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ConcurrentBuddyMutationStressTest {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void a_few_concurrent_clients_lose_nothing_and_never_give_up() throws Exception {
+        Outcome outcome = race("Few", 3, 10);
+        assertEquals(0, outcome.conflicts(), "writers to one book queue on its row lock instead of exhausting retries");
+    }
+
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void concurrent_adds_and_removes_lose_nothing() throws Exception {
+        int threads = Integer.getInteger("stress.threads", 8);
+        int ops = Integer.getInteger("stress.ops", 30);
+        Outcome outcome = race("Stress", threads, ops);
+        assertTrue(outcome.added() > threads * ops / 2, "most adds should get through the retries");
+    }
+
+    record Outcome(int added, int conflicts) {}
+
+    private Outcome race(String owner, int threads, int ops) throws Exception {
+        String base = "http://localhost:" + port + "/addressbooks";
+        Long bookId = rest.postForObject(base, new AddressBook(owner), AddressBook.class).getId();
+        String buddies = base + "/" + bookId + "/buddies";
+
+        Set<Long> added = ConcurrentHashMap.newKeySet();
+        Set<Long> removed = ConcurrentHashMap.newKeySet();
+        AtomicInteger conflicts = new AtomicInteger();
+        ConcurrentHashMap<Integer, Integer> unexpected = new ConcurrentHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int client = t;
+            futures.add(pool.submit(() -> {
+                go.await();
+                List<Long> mine = new ArrayList<>();
+                for (int i = 0; i < ops; i++) {
+                    if (i % 3 == 2 && !mine.isEmpty()) {
+                        Long victim = mine.remove(0);
+                        ResponseEntity<Void> resp = rest.exchange(buddies + "/" + victim, HttpMethod.DELETE, null, Void.class);
+                        if (resp.getStatusCode() == HttpStatus.NO_CONTENT) removed.add(victim);
+                        else if (resp.getStatusCode() == HttpStatus.CONFLICT) conflicts.incrementAndGet();
+                        else unexpected.merge(resp.getStatusCode().value(), 1, Integer::sum);
+                    } else {
+                        BuddyInfo b = new BuddyInfo("c" + client + "-" + i, "555-" + client + "-" + i, "Stress St");
+                        ResponseEntity<String> resp = rest.postForEntity(buddies, b, String.class);
+                        if (resp.getStatusCode() == HttpStatus.CREATED) {
+                            Long id = objectMapper.readValue(resp.getBody(), BuddyInfo.class).getId();
+                            added.add(id);
+                            mine.add(id);
+                        } else if (resp.getStatusCode() == HttpStatus.CONFLICT) {
+                            conflicts.incrementAndGet();
+                        } else {
+                            unexpected.merge(resp.getStatusCode().value(), 1, Integer::sum);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Future<?> f : futures) f.get();
+        long ms = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        pool.shutdown();
+
+        Set<Long> expected = new HashSet<>(added);
+        expected.removeAll(removed);
+        Set<Long> actual = new HashSet<>();
+        for (BuddyInfo b : rest.getForObject(base + "/" + bookId, AddressBook.class).getBuddies()) actual.add(b.getId());
+        System.out.printf("stress: %d threads x %d ops in %,d ms (%.0f ops/s), %d added, %d removed, %d gave up with 409%n",
+                threads, ops, ms, threads * ops * 1000.0 / ms, added.size(), removed.size(), conflicts.get());
+
+        assertTrue(unexpected.isEmpty(), "unexpected statuses: " + unexpected);
+        assertEquals(expected, actual);
+        return new Outcome(added.size(), conflicts.get());
+    }
+}
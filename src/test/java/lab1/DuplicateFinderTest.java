@@ -0,0 +1,79 @@
+package lab1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateFinderTest {
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    private static DuplicateCluster.Member m(long id, long book, String name, String phone) {
+        return new DuplicateCluster.Member(id, book, name, phone);
+    }
+
+    private static Set<Set<Long>> idSets(List<DuplicateCluster> clusters) {
+        return clusters.stream()
+                .map(c -> c.members().stream().map(DuplicateCluster.Member::id).collect(Collectors.toSet()))
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    void same_phone_formatted_differently_across_books_clusters() {
+        List<DuplicateCluster> found = new DuplicateFinder(pool, 100).find(List.of(
+                m(1, 10, "John Smith", "613-555-0101"),
+                m(2, 20, "Jon Smith", "(613) 555 0101"),
+                m(3, 30, "J. Smith", "+1 613 555 0101"),
+                m(4, 10, "Mary Jones", "613-555-0199")));
+
+        assertEquals(Set.of(Set.of(1L, 2L, 3L)), idSets(found));
+    }
+
+    @Test
+    void typo_in_name_and_one_phone_digit_still_clusters() {
+        List<DuplicateCluster> found = new DuplicateFinder(pool, 100).find(List.of(
+                m(1, 10, "Catherine Tremblay", "613-555-0101"),
+                m(2, 20, "Catherine Tremblya", "613-555-0107"),
+                m(3, 30, "Catherine Tremblay", "416-999-1234")));
+
+        assertEquals(Set.of(Set.of(1L, 2L)), idSets(found));
+    }
+
+    @Test
+    void shared_phone_with_unrelated_name_does_not_cluster() {
+        List<DuplicateCluster> found = new DuplicateFinder(pool, 100).find(List.of(
+                m(1, 10, "Front Desk", "613-555-0000"),
+                m(2, 20, "Zhang Wei", "613-555-0000")));
+
+        assertTrue(found.isEmpty());
+    }
+
+    @Test
+    void oversized_blocks_are_skipped() {
+        List<DuplicateCluster.Member> buddies = new ArrayList<>();
+        for (int i = 0; i < 50; i++) buddies.add(m(i, i, "Placeholder Name", "000-000-0000"));
+        DuplicateFinder finder = new DuplicateFinder(pool, 10);
+
+        assertTrue(finder.find(buddies).isEmpty());
+        assertTrue(finder.skippedBlocks() > 0);
+    }
+
+    @Test
+    void name_similarity_is_trigram_jaccard() {
+        assertEquals(1.0, DuplicateFinder.jaccard(DuplicateFinder.trigrams("Zoë Côté"), DuplicateFinder.trigrams("zoe cote")));
+        assertTrue(DuplicateFinder.jaccard(DuplicateFinder.trigrams("John"), DuplicateFinder.trigrams("Mary")) < 0.1);
+        assertEquals("6135550101", DuplicateFinder.phoneKey("+1 (613) 555-0101"));
+    }
+}
@@ -0,0 +1,89 @@
+package lab1;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times a full duplicate scan over 1M buddies spread across 10k books, ~5% of them seeded as
+ * reformatted or misspelled copies. Disabled by default; run with:
+ * mvn test -Dbenchmarks=true -Dtest=DuplicateScanBenchmarkTest [-Dbuddies=1000000]
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:dupbench;DB_CLOSE_DELAY=-1",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "management.server.port=-1"
+        })
+class DuplicateScanBenchmarkTest {
+    static final String[] FIRST = {"John", "Mary", "Ahmed", "Li", "Sofia", "Jordan", "Omar", "Priya", "Noah", "Emma"};
+    static final String[] LAST = {"Smith", "Nguyen", "Tremblay", "Gagnon", "Roy", "Khan", "Patel", "Martin", "Lee", "Singh"};
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    DuplicateScanService scanService;
+
+    @Test
+    void scan_one_million_buddies() {
+        int n = Integer.getInteger("buddies", 1_000_000);
+        int books = Math.max(1, n / 100);
+        List<Object[]> bookRows = new ArrayList<>();
+        for (long b = 1; b <= books; b++) bookRows.add(new Object[]{b, "owner" + b});
+        jdbc.batchUpdate("insert into address_book (id, owner, version) values (?, ?, 0)", bookRows);
+
+        Random rnd = new Random(7);
+        List<Object[]> batch = new ArrayList<>(10_000);
+        for (long id = 1; id <= n; id++) {
+            String name, phone;
+            if (id > 20 && rnd.nextInt(20) == 0) {
+                // near-copy of an earlier buddy: same number reformatted, name with a swapped letter
+                long of = id - 1 - rnd.nextInt(20);
+                name = typo(name(of));
+                phone = "(" + phone(of).substring(0, 3) + ") " + phone(of).substring(4).replace('-', ' ');
+            } else {
+                name = name(id);
+                phone = phone(id);
+            }
+            batch.add(new Object[]{id, name, phone, "Bench St", 1 + rnd.nextInt(books)});
+            if (batch.size() == 10_000) flush(batch);
+        }
+        flush(batch);
+
+        long start = System.nanoTime();
+        List<DuplicateCluster> clusters = scanService.scan();
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("duplicate scan: %,d buddies -> %,d clusters in %,d ms (%s)%n",
+                n, clusters.size(), ms, scanService.status());
+    }
+
+    private static String name(long id) {
+        return FIRST[(int) (id % FIRST.length)] + " " + LAST[(int) (id / FIRST.length % LAST.length)]
+                + " " + Long.toString(id, 36);
+    }
+
+    private static String phone(long id) {
+        return String.format("613-%03d-%04d", id / 10_000 % 1000, id % 10_000);
+    }
+
+    private static String typo(String s) {
+        int i = s.length() / 2;
+        return s.substring(0, i) + s.charAt(i + 1) + s.charAt(i) + s.substring(i + 2);
+    }
+
+    private void flush(List<Object[]> batch) {
+        jdbc.batchUpdate("insert into buddy_info (id, name, phone, address, address_book_id) values (?, ?, ?, ?, ?)", batch);
+        batch.clear();
+    }
+}
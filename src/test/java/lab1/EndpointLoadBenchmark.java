@@ -0,0 +1,113 @@
+package lab1;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives the existing read/write endpoints with many concurrent clients and prints p50/p99
+ * latency and error counts; subclasses pick the Tomcat thread model (and must carry the
+ * benchmark gate themselves, JUnit conditions are not inherited). Compare with:
+ * mvn -Pjava21 test -Dbenchmarks=true -Dtest='*ThreadsLoadTest'
+ */
+abstract class EndpointLoadBenchmark {
+    static final int CLIENTS = 1_000;
+    static final int REQUESTS_PER_CLIENT = 5;
+    static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    @LocalServerPort
+    int port;
+
+    abstract String mode();
+
+    @Test
+    void p99_latency_under_burst() throws Exception {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        String base = "http://localhost:" + port + "/addressbooks";
+        String created = send(http, post(base, "{\"owner\":\"load\"}")).body();
+        Matcher m = ID.matcher(created);
+        if (!m.find()) throw new IllegalStateException("no id in " + created);
+        String book = base + "/" + m.group(1);
+        for (int i = 0; i < 200; i++) {
+            send(http, post(book + "/buddies", "{\"name\":\"b" + i + "\",\"phone\":\"555-" + i + "\",\"address\":\"Load St\"}"));
+        }
+
+        run(http, book, 200); // warm-up
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        ConcurrentHashMap<Integer, Integer> statuses = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        run(http, book, CLIENTS, latencies, statuses);
+        long wall = System.nanoTime() - start;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%-8s threads: %,d requests in %,d ms  p50=%,d ms  p99=%,d ms  statuses=%s%n",
+                mode(), sorted.size(), wall / 1_000_000,
+                percentile(sorted, 0.50) / 1_000_000, percentile(sorted, 0.99) / 1_000_000, statuses);
+    }
+
+    private void run(HttpClient http, String book, int clients) throws Exception {
+        run(http, book, clients, Collections.synchronizedList(new ArrayList<>()), new ConcurrentHashMap<>());
+    }
+
+    private void run(HttpClient http, String book, int clients,
+                     List<Long> latencies, ConcurrentHashMap<Integer, Integer> statuses) throws Exception {
+        // one lightweight client thread each so the client side never becomes the bottleneck
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(clients, 256));
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            futures.add(pool.submit(() -> {
+                go.await();
+                for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                    HttpRequest req = switch ((client + r) % 4) {
+                        case 0 -> get(book + "?view=summary");
+                        case 1 -> get(book + "/buddies?limit=20");
+                        case 2 -> get(book);
+                        default -> post(book + "/buddies",
+                                "{\"name\":\"c" + client + "\",\"phone\":\"" + r + "\",\"address\":\"Burst Ave\"}");
+                    };
+                    long t0 = System.nanoTime();
+                    int status = send(http, req).statusCode();
+                    latencies.add(System.nanoTime() - t0);
+                    statuses.merge(status, 1, Integer::sum);
+                }
+                return null;
+            }));
+        }
+        go.countDown();
+        for (Future<?> f : futures) f.get();
+        pool.shutdown();
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private static HttpRequest post(String url, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private static HttpResponse<String> send(HttpClient http, HttpRequest req) throws Exception {
+        return http.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) return 0;
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(p * sorted.size()) - 1));
+    }
+}
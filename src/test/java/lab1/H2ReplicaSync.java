@@ -0,0 +1,45 @@
+package lab1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Test stand-in for database replication between two H2 instances: each {@link #sync()} copies
+ * the whole primary (schema and rows) onto the replica with SCRIPT / RUNSCRIPT. Between syncs
+ * the replica is as stale as a lagging real one.
+ */
+class H2ReplicaSync {
+    private final String primaryUrl;
+    private final String replicaUrl;
+
+    H2ReplicaSync(String primaryUrl, String replicaUrl) {
+        this.primaryUrl = primaryUrl;
+        this.replicaUrl = replicaUrl;
+    }
+
+    void sync() {
+        try {
+            Path script = Files.createTempFile("h2-replica", ".sql");
+            try (Connection primary = DriverManager.getConnection(primaryUrl, "sa", "");
+                 Connection replica = DriverManager.getConnection(replicaUrl, "sa", "");
+                 Statement fromPrimary = primary.createStatement();
+                 Statement toReplica = replica.createStatement()) {
+                fromPrimary.execute("SCRIPT TO '" + script + "'");
+                toReplica.execute("DROP ALL OBJECTS");
+                toReplica.execute("RUNSCRIPT FROM '" + script + "'");
+            } finally {
+                Files.deleteIfExists(script);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("replica sync failed", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
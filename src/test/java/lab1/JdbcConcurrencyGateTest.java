@@ -0,0 +1,66 @@
+package lab1;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JdbcConcurrencyGateTest {
+
+    @Test
+    void connection_holds_a_permit_until_closed() throws SQLException {
+        DataSource target = mock(DataSource.class);
+        Connection raw = mock(Connection.class);
+        when(target.getConnection()).thenReturn(raw);
+        JdbcConcurrencyGate.GatedDataSource gated =
+                new JdbcConcurrencyGate.GatedDataSource(target, 1, Duration.ofMillis(50));
+
+        Connection first = gated.getConnection();
+        assertEquals(0, gated.availablePermits());
+        assertThrows(SQLTransientConnectionException.class, gated::getConnection);
+
+        first.close();
+        first.close(); // double close releases only once
+        verify(raw, times(1)).close();
+        assertEquals(1, gated.availablePermits());
+        gated.getConnection().close();
+    }
+
+    @Test
+    void failed_checkout_returns_the_permit() throws SQLException {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenThrow(new SQLException("pool down"));
+        JdbcConcurrencyGate.GatedDataSource gated =
+                new JdbcConcurrencyGate.GatedDataSource(target, 2, Duration.ofMillis(50));
+
+        assertThrows(SQLException.class, gated::getConnection);
+        assertEquals(2, gated.availablePermits());
+    }
+
+    @Test
+    void routers_are_sized_from_all_their_pools() {
+        HikariDataSource small = new HikariDataSource();
+        small.setMaximumPoolSize(4);
+        HikariDataSource large = new HikariDataSource();
+        large.setMaximumPoolSize(6);
+        ShardRoutingDataSource shards = new ShardRoutingDataSource(List.of(small, large), new ShardDirectory(new ShardRing(2, 8)));
+
+        assertEquals(10, JdbcConcurrencyGate.poolSize(shards));
+        assertEquals(JdbcConcurrencyGate.DEFAULT_POOL_SIZE, JdbcConcurrencyGate.poolSize(new HikariDataSource()));
+        shards.close();
+    }
+
+    @Test
+    void gate_wraps_the_pool_before_the_query_counter_does() {
+        assertTrue(new JdbcConcurrencyGate(new MockEnvironment()).getOrder() < new QueryCounter().getOrder());
+    }
+}
@@ -0,0 +1,17 @@
+package lab1;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/** Baseline: default Tomcat platform-thread pool, no JDBC gate. */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.threads.virtual.enabled=false", "spring.jpa.show-sql=false"})
+class PlatformThreadsLoadTest extends EndpointLoadBenchmark {
+
+    @Override
+    String mode() { return "platform"; }
+}
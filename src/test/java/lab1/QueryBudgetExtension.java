@@ -0,0 +1,60 @@
+package lab1;
+
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.opentest4j.AssertionFailedError;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Asserts statement budgets around a block of test code, counting through the application's
+ * QueryCounter (so it sees statements run by the server thread in RANDOM_PORT tests too).
+ * <pre>
+ * &#64;RegisterExtension
+ * QueryBudgetExtension queries = new QueryBudgetExtension();
+ * ...
+ * queries.atMost(2, () -&gt; rest.getForEntity(...));
+ * </pre>
+ */
+class QueryBudgetExtension implements BeforeEachCallback {
+    private QueryCounter counter;
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        counter = SpringExtension.getApplicationContext(context).getBean(QueryCounter.class);
+    }
+
+    /** Runs the block and fails if it executed more than {@code max} JDBC statements. */
+    <T> T atMost(int max, ThrowingSupplier<T> block) {
+        long before = counter.total();
+        T result;
+        try {
+            result = block.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        long ran = counter.total() - before;
+        if (ran > max) {
+            throw new AssertionFailedError("query budget exceeded: ran " + ran + " statements, budget " + max, max, ran);
+        }
+        return result;
+    }
+
+    /** Statements run by the block, for budgets checked by hand. */
+    long count(ThrowingRunnable block) {
+        long before = counter.total();
+        try {
+            block.run();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return counter.total() - before;
+    }
+
+    interface ThrowingSupplier<T> {
+        T get() throws Exception;
+    }
+
+    interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,144 @@
+package lab1;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.datasource.url=" + ReplicaRoutingIntegrationTest.PRIMARY,
+                "spring.jpa.open-in-view=false",
+                "addressbook.replicas.enabled=true",
+                "addressbook.replicas.urls=" + ReplicaRoutingIntegrationTest.REPLICA,
+                "addressbook.replicas.max-lag=1s",
+                "addressbook.replicas.check-interval=50ms"
+        })
+class ReplicaRoutingIntegrationTest {
+    static final String PRIMARY = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @Autowired
+    MeterRegistry registry;
+
+    final H2ReplicaSync replication = new H2ReplicaSync(PRIMARY, REPLICA);
+
+    private String base() {
+        return "http://localhost:" + port + "/addressbooks";
+    }
+
+    // ---------- helpers ----------
+    private Long createBook(String owner) {
+        ResponseEntity<AddressBook> resp = rest.postForEntity(base(), new AddressBook(owner), AddressBook.class);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        return resp.getBody().getId();
+    }
+
+    private void addBuddy(Long bookId, String name) {
+        ResponseEntity<String> resp = rest.postForEntity(base() + "/" + bookId + "/buddies",
+                new BuddyInfo(name, "613-" + name.hashCode(), "Replica Rd"), String.class);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+    }
+
+    private long buddyCount(Long bookId) {
+        return rest.getForObject(base() + "/" + bookId + "?view=summary", AddressBookSummary.class).buddyCount();
+    }
+
+    private double replicaLagSeconds() {
+        return registry.get("addressbook.replica.lag").tag("replica", "replica-0").gauge().value();
+    }
+
+    private void awaitLag(boolean withinMaxLag) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            // NaN (a check that ran while a sync had the replica emptied) is neither within nor
+            // past max-lag, since every comparison with it is false; wait for a real measurement
+            double lag = replicaLagSeconds();
+            if (withinMaxLag ? lag <= 1.0 : lag > 1.0) return;
+            Thread.sleep(20);
+        }
+        fail("replica lag stayed at " + replicaLagSeconds() + "s");
+    }
+
+    // ---------- tests ----------
+
+    @Test
+    void reads_use_the_replica_while_it_keeps_up_and_the_primary_once_it_lags() throws Exception {
+        Long bookId = createBook("Routed");
+        addBuddy(bookId, "first");
+        replication.sync();
+        awaitLag(true);
+
+        // written to the primary only: a replica read does not see it yet
+        addBuddy(bookId, "second");
+        assertEquals(1, buddyCount(bookId));
+        replication.sync();
+        assertEquals(2, buddyCount(bookId));
+
+        // replication stops: once the replica is past max-lag, reads fall back to the primary
+        awaitLag(false);
+        double fallbacksBefore = registry.get("addressbook.replica.fallbacks").counter().count();
+        addBuddy(bookId, "third");
+        assertEquals(3, buddyCount(bookId));
+        assertTrue(registry.get("addressbook.replica.fallbacks").counter().count() > fallbacksBefore);
+    }
+
+    @Test
+    void writes_always_go_to_the_primary() throws Exception {
+        Long bookId = createBook("Writer");
+        replication.sync();
+        awaitLag(true);
+
+        // read-only lookups (dedup key, book version) inside the write join its primary transaction
+        addBuddy(bookId, "only");
+        ResponseEntity<String> dup = rest.postForEntity(base() + "/" + bookId + "/buddies?onDuplicate=reject",
+                new BuddyInfo("only", "613-" + "only".hashCode(), "Replica Rd"), String.class);
+        assertEquals(HttpStatus.CONFLICT, dup.getStatusCode());
+
+        replication.sync();
+        assertEquals(1, buddyCount(bookId));
+    }
+
+    @Test
+    void a_book_cached_from_a_stale_replica_is_evicted_again_after_max_lag() throws Exception {
+        Long bookId = createBook("Cached");
+        replication.sync();
+        awaitLag(true);
+
+        addBuddy(bookId, "late");
+        // the replica has not seen the buddy: this read caches the book without it
+        assertEquals(0, rest.getForObject(base() + "/" + bookId, AddressBook.class).getBuddies().size());
+        replication.sync();
+
+        Thread.sleep(1_200); // max-lag, after which the write's delayed eviction has run
+        replication.sync();
+        assertEquals(1, rest.getForObject(base() + "/" + bookId, AddressBook.class).getBuddies().size());
+    }
+
+    @Test
+    void connections_with_other_credentials_are_refused_as_unsupported() throws Exception {
+        try (ReplicaPool pool = new ReplicaPool(new DriverManagerDataSource(PRIMARY, "sa", ""), List.of(),
+                Duration.ofSeconds(1), Duration.ofHours(1), new SimpleMeterRegistry())) {
+            assertThrows(SQLFeatureNotSupportedException.class, () -> pool.getConnection("sa", ""));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package lab1;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRingTest {
+
+    @Test
+    void spreads_sequential_ids_evenly() {
+        ShardRing ring = new ShardRing(4, 64);
+        int[] counts = new int[4];
+        for (long id = 1; id <= 100_000; id++) counts[ring.shardFor(id)]++;
+        for (int c : counts) assertTrue(c > 15_000 && c < 35_000, "shard share " + c);
+    }
+
+    @Test
+    void small_ids_are_spread_too() {
+        ShardRing ring = new ShardRing(3, 64);
+        java.util.Set<Integer> used = new java.util.HashSet<>();
+        for (long id = 1; id <= 30; id++) used.add(ring.shardFor(id));
+        assertEquals(3, used.size());
+    }
+
+    @Test
+    void adding_a_shard_only_moves_books_onto_it() {
+        ShardRing three = new ShardRing(3, 64);
+        ShardRing four = new ShardRing(4, 64);
+        int moved = 0;
+        for (long id = 1; id <= 100_000; id++) {
+            int before = three.shardFor(id), after = four.shardFor(id);
+            if (before != after) {
+                assertEquals(3, after, "id " + id + " moved between old shards");
+                moved++;
+            }
+        }
+        assertTrue(moved > 15_000 && moved < 35_000, "moved " + moved);
+    }
+
+    @Test
+    void interleaved_sequence_blocks_never_overlap() {
+        int shards = 3;
+        java.util.Set<Long> seen = new java.util.HashSet<>();
+        for (int s = 0; s < shards; s++) {
+            long end = ShardBootstrap.firstBlockEnd(1234, s, shards);
+            assertTrue(end - ShardBootstrap.BLOCK >= 1234, "block starts above existing ids");
+            for (int block = 0; block < 20; block++, end += (long) shards * ShardBootstrap.BLOCK) {
+                for (long id = end - ShardBootstrap.BLOCK + 1; id <= end; id++) assertTrue(seen.add(id), "id " + id);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package lab1;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.jpa.open-in-view=false",
+                "addressbook.shards.enabled=true",
+                "addressbook.shards.urls=" + ShardingIntegrationTest.SHARD0 + "," + ShardingIntegrationTest.SHARD1
+                        + "," + ShardingIntegrationTest.SHARD2
+        })
+class ShardingIntegrationTest {
+    static final String SHARD0 = "jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1";
+    static final String SHARD1 = "jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1";
+    static final String SHARD2 = "jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1";
+    static final String[] SHARDS = {SHARD0, SHARD1, SHARD2};
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @Autowired
+    ShardDirectory directory;
+
+    @Autowired
+    ShardedBooks shardedBooks;
+
+    private String base() {
+        return "http://localhost:" + port + "/addressbooks";
+    }
+
+    // ---------- helpers ----------
+    private Long createBook(String owner) {
+        ResponseEntity<AddressBook> resp = rest.postForEntity(base(), new AddressBook(owner), AddressBook.class);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        return resp.getBody().getId();
+    }
+
+    private BuddyInfo addBuddy(Long bookId, String name) {
+        ResponseEntity<BuddyInfo> resp = rest.postForEntity(base() + "/" + bookId + "/buddies",
+                new BuddyInfo(name, "613-" + Math.abs(name.hashCode()), "Shard St"), BuddyInfo.class);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        return resp.getBody();
+    }
+
+    /** Ids found in a table of one shard, read straight from its database. */
+    private static List<Long> ids(int shard, String sql) throws SQLException {
+        List<Long> out = new ArrayList<>();
+        try (Connection c = DriverManager.getConnection(SHARDS[shard], "sa", "");
+             ResultSet rs = c.createStatement().executeQuery(sql)) {
+            while (rs.next()) out.add(rs.getLong(1));
+        }
+        return out;
+    }
+
+    // ---------- tests ----------
+
+    @Test
+    void books_live_on_their_ring_shard_with_their_buddies_and_globally_unique_ids() throws Exception {
+        List<Long> books = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Long id = createBook("Spread" + i);
+            addBuddy(id, "pal" + i);
+            addBuddy(id, "mate" + i);
+            books.add(id);
+        }
+
+        Set<Integer> used = new HashSet<>();
+        for (Long id : books) {
+            int shard = directory.shardOf(id);
+            used.add(shard);
+            assertTrue(ids(shard, "select id from address_book").contains(id), "book " + id + " on shard " + shard);
+            assertEquals(2, ids(shard, "select id from buddy_info where address_book_id = " + id).size());
+            assertEquals(2, rest.getForObject(base() + "/" + id, AddressBook.class).getBuddies().size());
+        }
+        assertTrue(used.size() > 1, "books spread over shards " + used);
+
+        Set<Long> bookIds = new HashSet<>(), buddyIds = new HashSet<>();
+        for (int s = 0; s < SHARDS.length; s++) {
+            for (Long id : ids(s, "select id from address_book")) assertTrue(bookIds.add(id), "book id " + id);
+            for (Long id : ids(s, "select id from buddy_info")) assertTrue(buddyIds.add(id), "buddy id " + id);
+        }
+    }
+
+    @Test
+    void cross_book_finders_gather_from_every_shard() {
+        List<Long> books = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Long id = createBook("Gatherer");
+            addBuddy(id, "Common Name");
+            books.add(id);
+        }
+        assertTrue(books.stream().map(directory::shardOf).distinct().count() > 1);
+
+        List<BuddyInfo> named = shardedBooks.findBuddiesByName("Common Name");
+        assertEquals(12, named.size());
+        assertEquals(books, shardedBooks.findBooksByOwner("Gatherer").stream().map(AddressBook::getId).toList());
+
+        // batch-get asks each shard for its own ids and answers in request order
+        List<Long> request = new ArrayList<>(books);
+        java.util.Collections.reverse(request);
+        AddressBookBatch batch = rest.postForObject(base() + "/batch-get", request, AddressBookBatch.class);
+        assertEquals(request, batch.results().stream().map(AddressBookBatch.Entry::id).toList());
+        assertTrue(batch.results().stream().allMatch(e -> e.found() && e.book().buddies().size() == 1));
+        AddressBookBatch limited = rest.postForObject(base() + "/batch-get?buddyLimit=0", request, AddressBookBatch.class);
+        assertEquals(request, limited.results().stream().map(AddressBookBatch.Entry::id).toList());
+        assertTrue(limited.results().stream().allMatch(e -> e.book().buddies().isEmpty() && e.buddyCount() == 1));
+    }
+
+    @Test
+    void a_book_moves_to_another_shard_online_and_rebalance_brings_it_home() throws Exception {
+        Long id = createBook("Mover");
+        Long buddyId = addBuddy(id, "before").getId();
+        int home = directory.shardOf(id);
+        int other = (home + 1) % SHARDS.length;
+
+        assertEquals(HttpStatus.NO_CONTENT, rest.postForEntity(
+                "http://localhost:" + port + "/admin/shards/books/" + id + "/move?to=" + other, null, Void.class).getStatusCode());
+        assertEquals(other, directory.shardOf(id));
+        assertFalse(ids(home, "select id from address_book").contains(id));
+        assertEquals(List.of(buddyId), ids(other, "select id from buddy_info where address_book_id = " + id));
+
+        // reads and writes follow the book
+        addBuddy(id, "after");
+        assertEquals(2, rest.getForObject(base() + "/" + id, AddressBook.class).getBuddies().size());
+        assertEquals(1, rest.getForObject(base() + "/" + id + "/buddies/search?q=after", BuddySearchHit[].class).length);
+        String export = rest.getForObject(base() + "/" + id + "/export?format=ndjson", String.class);
+        assertEquals(2, export.lines().count());
+
+        ResponseEntity<ShardAdminController.RebalanceResult> rebalanced = rest.postForEntity(
+                "http://localhost:" + port + "/admin/shards/rebalance", null, ShardAdminController.RebalanceResult.class);
+        assertTrue(rebalanced.getBody().moved() >= 1);
+        assertEquals(home, directory.shardOf(id));
+        assertEquals(2, ids(home, "select id from buddy_info where address_book_id = " + id).size());
+    }
+
+    @Test
+    void moving_an_unknown_book_or_to_an_unknown_shard_is_rejected() {
+        String admin = "http://localhost:" + port + "/admin/shards/books/";
+        assertEquals(HttpStatus.NOT_FOUND, rest.postForEntity(admin + "987654321/move?to=1", null, String.class).getStatusCode());
+        Long id = createBook("Nowhere");
+        assertEquals(HttpStatus.BAD_REQUEST, rest.postForEntity(admin + id + "/move?to=7", null, String.class).getStatusCode());
+    }
+}
@@ -0,0 +1,20 @@
+package lab1;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/** Virtual-thread request handling with the JDBC gate in front of the pool; needs Java 21. */
+@EnabledForJreRange(min = JRE.JAVA_21)
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.threads.virtual.enabled=true", "spring.jpa.show-sql=false"})
+class VirtualThreadsLoadTest extends EndpointLoadBenchmark {
+
+    @Override
+    String mode() { return "virtual"; }
+}